@@ -0,0 +1,208 @@
+package com.deepoove.poi.policy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.namespace.QName;
+
+import org.apache.poi.ooxml.POIXMLDocumentPart;
+import org.apache.poi.xwpf.usermodel.BodyElementType;
+import org.apache.poi.xwpf.usermodel.IBody;
+import org.apache.poi.xwpf.usermodel.IBodyElement;
+import org.apache.poi.xwpf.usermodel.XWPFChart;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.apache.poi.xwpf.usermodel.XWPFTableCell;
+import org.apache.poi.xwpf.usermodel.XWPFTableRow;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTP;
+
+import com.alibaba.fastjson.JSONArray;
+import com.deepoove.poi.exception.RenderException;
+import com.deepoove.poi.render.RenderContext;
+import com.deepoove.poi.render.processor.DocPrSupport;
+import com.deepoove.poi.template.ElementTemplate;
+import com.deepoove.poi.template.run.MyRunTemplate;
+import com.wordchart.render.ChartPrototype;
+
+/**
+ * 图表区块:图表EXCEL第一个单元格为{{?tag}}时,按数据中的每一项复制一份图表所在段落,
+ * 每一项的格式同MyChartPolicy。第一项渲染模板图表本身,其余项通过ChartPrototype复制part,
+ * 数据为空时删除图表。图表可以位于正文、表格、页眉或页脚中
+ *
+ * <pre>
+ * [
+ *   [["", "系列1"], ["一月", 100]],
+ *   [["", "系列1"], ["一月", 200]]
+ * ]
+ * </pre>
+ */
+public class MyChartIterablePolicy extends AbstractRenderPolicy<JSONArray> {
+
+	private static final String CHART_NS = "http://schemas.openxmlformats.org/drawingml/2006/chart";
+
+	private static final String R_NS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+	private static final String W_NS = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+
+	private static final QName R_ID = new QName(R_NS, "id");
+
+	private static final QName W_R = new QName(W_NS, "r");
+
+	private final MyChartPolicy chartPolicy = new MyChartPolicy();
+
+	// 模板图表的原型,key为ChartPrototype.fingerprint。同一Configure可能用于多个模板,
+	// 各模板的图表part名通常相同,不能只按part名区分
+	private final ConcurrentMap<String, ChartPrototype> prototypes = new ConcurrentHashMap<String, ChartPrototype>();
+
+	@Override
+	protected boolean validate(JSONArray data) {
+		// 数据为null时同空集合,删除图表
+		return true;
+	}
+
+	@Override
+	public void doRender(RenderContext<JSONArray> context) throws Exception {
+		ElementTemplate elementTemplate = context.getEleTemplate();
+		if (!(elementTemplate instanceof MyRunTemplate) || ((MyRunTemplate) elementTemplate).getChart() == null) {
+			return;
+		}
+		MyRunTemplate myRunTemplate = (MyRunTemplate) elementTemplate;
+		XWPFChart chart = myRunTemplate.getChart();
+		POIXMLDocumentPart parent = chart.getParent();
+		if (!(parent instanceof IBody)) {
+			throw new RenderException("Unsupported chart container of " + myRunTemplate);
+		}
+		String relationId = parent.getRelationId(chart);
+		// 图表关系所在的正文、页眉或页脚
+		XWPFParagraph paragraph = findParagraph(((IBody) parent).getBodyElements(), relationId);
+		if (paragraph == null) {
+			throw new RenderException("Cannot find the paragraph of chart " + myRunTemplate);
+		}
+		JSONArray items = context.getData();
+		if (items == null || items.isEmpty()) {
+			removeChartRuns(paragraph.getCTP(), relationId);
+			return;
+		}
+		for (int i = 0; i < items.size(); i++) {
+			if (!isDataset(items.get(i))) {
+				throw new RenderException("Chart block " + myRunTemplate
+						+ " requires a list of chart datasets, but item " + i + " is not a dataset: " + items.get(i));
+			}
+		}
+
+		// 图表在其它标签之后渲染,这里直接在xml中复制段落
+		ChartPrototype.Binding binding = items.size() > 1 ? prototype(chart).bind(chart) : null;
+		XmlCursor source = paragraph.getCTP().newCursor();
+		XmlCursor dest = paragraph.getCTP().newCursor();
+		dest.toEndToken();
+		dest.toNextToken();
+		for (int i = 1; i < items.size(); i++) {
+			source.copyXml(dest);
+			XmlCursor copied = dest.newCursor();
+			copied.toPrevSibling();
+			CTP ctp = (CTP) copied.getObject();
+			copied.dispose();
+
+			String instanceRelationId = binding.newInstance(items.getJSONArray(i));
+			for (XmlObject chartRef : selectCharts(ctp, relationId)) {
+				XmlCursor cursor = chartRef.newCursor();
+				cursor.setAttributeText(R_ID, instanceRelationId);
+				cursor.dispose();
+			}
+			DocPrSupport.updateDocPrId(new XWPFParagraph(ctp, paragraph.getBody()));
+		}
+		source.dispose();
+		dest.dispose();
+
+		chartPolicy.doRender(
+				new RenderContext<JSONArray>(elementTemplate, items.getJSONArray(0), context.getTemplate()));
+	}
+
+	/**
+	 * 数据项须为MyChartPolicy的数据:由行组成的列表,常见错误是把单份图表数据直接传给图表区块
+	 */
+	private static boolean isDataset(Object item) {
+		if (!(item instanceof List)) {
+			return item == null;
+		}
+		for (Object row : (List<?>) item) {
+			if (row != null && !(row instanceof List)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 原型须在模板图表首次渲染前读取,之后内容相同的模板图表直接复用
+	 */
+	private ChartPrototype prototype(XWPFChart chart) throws IOException {
+		String fingerprint = ChartPrototype.fingerprint(chart);
+		ChartPrototype prototype = prototypes.get(fingerprint);
+		if (prototype == null) {
+			prototype = ChartPrototype.of(chart);
+			ChartPrototype existing = prototypes.putIfAbsent(fingerprint, prototype);
+			if (existing != null) {
+				prototype = existing;
+			}
+		}
+		return prototype;
+	}
+
+	private XWPFParagraph findParagraph(List<IBodyElement> bodyElements, String relationId) {
+		for (IBodyElement element : bodyElements) {
+			if (element.getElementType() == BodyElementType.PARAGRAPH) {
+				XWPFParagraph paragraph = (XWPFParagraph) element;
+				if (!selectCharts(paragraph.getCTP(), relationId).isEmpty()) {
+					return paragraph;
+				}
+			} else if (element.getElementType() == BodyElementType.TABLE) {
+				for (XWPFTableRow row : ((XWPFTable) element).getRows()) {
+					for (XWPFTableCell cell : row.getTableCells()) {
+						XWPFParagraph paragraph = findParagraph(cell.getBodyElements(), relationId);
+						if (paragraph != null) {
+							return paragraph;
+						}
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	private void removeChartRuns(CTP ctp, String relationId) {
+		for (XmlObject chartRef : selectCharts(ctp, relationId)) {
+			// 向上找到图表所在的w:r
+			XmlCursor cursor = chartRef.newCursor();
+			boolean found = false;
+			while (!(found = W_R.equals(cursor.getName())) && cursor.toParent()) {
+				continue;
+			}
+			if (found) {
+				cursor.removeXml();
+			}
+			cursor.dispose();
+		}
+	}
+
+	/**
+	 * 段落中引用该图表的c:chart元素
+	 */
+	private static List<XmlObject> selectCharts(CTP ctp, String relationId) {
+		List<XmlObject> charts = new ArrayList<XmlObject>();
+		for (XmlObject chartRef : ctp.selectPath("declare namespace c='" + CHART_NS + "' .//c:chart")) {
+			XmlCursor cursor = chartRef.newCursor();
+			if (relationId.equals(cursor.getAttributeText(R_ID))) {
+				charts.add(chartRef);
+			}
+			cursor.dispose();
+		}
+		return charts;
+	}
+
+}
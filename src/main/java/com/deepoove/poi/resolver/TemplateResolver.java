@@ -24,6 +24,7 @@ import java.util.Set;
 import java.util.regex.Matcher;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.poi.ooxml.POIXMLDocumentPart;
 import org.apache.poi.xssf.usermodel.XSSFCell;
 import org.apache.poi.xssf.usermodel.XSSFRow;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
@@ -34,6 +35,7 @@ import org.apache.poi.xwpf.usermodel.XWPFChart;
 import org.apache.poi.xwpf.usermodel.XWPFDocument;
 import org.apache.poi.xwpf.usermodel.XWPFFooter;
 import org.apache.poi.xwpf.usermodel.XWPFHeader;
+import org.apache.poi.xwpf.usermodel.XWPFHeaderFooter;
 import org.apache.poi.xwpf.usermodel.XWPFParagraph;
 import org.apache.poi.xwpf.usermodel.XWPFRun;
 import org.apache.poi.xwpf.usermodel.XWPFTable;
@@ -82,6 +84,7 @@ public class TemplateResolver extends AbstractResolver {
 		metaTemplates.addAll(resolveFooters(doc.getFooterList()));
 		// 增加对图表的解析
 		metaTemplates.addAll(resolveCharts(doc.getCharts()));
+		metaTemplates.addAll(resolveCharts(headerFooterCharts(doc)));
 		logger.info("Resolve the document end, resolve and create {} MetaTemplates.", metaTemplates.size());
 		return metaTemplates;
 	}
@@ -186,15 +189,13 @@ public class TemplateResolver extends AbstractResolver {
 	}
 
 	/**
-	 * 参考resolveXWPFRuns方法
+	 * 参考resolveXWPFRuns方法,图表的区块开始标签不入栈,整个图表即为一个区块
 	 * 
 	 * @param chart
 	 * @param tagName
 	 * @param metaTemplates
-	 * @param stack
 	 */
-	private void resolveXWPFChart(XWPFChart chart, String tagName, final List<MetaTemplate> metaTemplates,
-			final Deque<BlockTemplate> stack) {
+	private void resolveXWPFChart(XWPFChart chart, String tagName, final List<MetaTemplate> metaTemplates) {
 		if (StringUtils.isBlank(tagName)) {
 			return;
 		}
@@ -203,35 +204,11 @@ public class TemplateResolver extends AbstractResolver {
 			return;
 		}
 		char charValue = runTemplate.getSign().charValue();
-		if (charValue == config.getIterable().getLeft()) {
-			IterableTemplate freshIterableTemplate = new IterableTemplate(runTemplate);
-			stack.push(freshIterableTemplate);
-		} else if (charValue == config.getIterable().getRight()) {
-			if (stack.isEmpty())
-				throw new ResolverException(
-						"Mismatched start/end tags: No start mark found for end mark " + runTemplate);
-			BlockTemplate latestIterableTemplate = stack.pop();
-			if (StringUtils.isNotEmpty(runTemplate.getTagName())
-					&& !latestIterableTemplate.getStartMark().getTagName().equals(runTemplate.getTagName())) {
-				throw new ResolverException("Mismatched start/end tags: start mark "
-						+ latestIterableTemplate.getStartMark() + " does not match to end mark " + runTemplate);
-			}
-			latestIterableTemplate.setEndMark(runTemplate);
-			if (latestIterableTemplate instanceof IterableTemplate) {
-				latestIterableTemplate = ((IterableTemplate) latestIterableTemplate).buildIfInline();
-			}
-			if (stack.isEmpty()) {
-				metaTemplates.add(latestIterableTemplate);
-			} else {
-				stack.peek().getTemplates().add(latestIterableTemplate);
-			}
-		} else {
-			if (stack.isEmpty()) {
-				metaTemplates.add(runTemplate);
-			} else {
-				stack.peek().getTemplates().add(runTemplate);
-			}
+		if (charValue == config.getIterable().getRight()) {
+			throw new ResolverException("Chart tag cannot be an iterable end mark: " + runTemplate);
 		}
+		// 一个图表只有一个标签,区块开始标签即代表整个图表区块,由MyChartIterablePolicy按数据复制图表
+		metaTemplates.add(runTemplate);
 	}
 
 	private void checkStack(Deque<BlockTemplate> stack) {
@@ -263,6 +240,27 @@ public class TemplateResolver extends AbstractResolver {
 		return metaTemplates;
 	}
 
+	/**
+	 * XWPFDocument.getCharts只包含正文中的图表,页眉、页脚中的图表从其关系中查找
+	 * 
+	 * @param doc
+	 * @return
+	 */
+	public static List<XWPFChart> headerFooterCharts(XWPFDocument doc) {
+		List<XWPFHeaderFooter> headerFooters = new ArrayList<>();
+		headerFooters.addAll(doc.getHeaderList());
+		headerFooters.addAll(doc.getFooterList());
+		List<XWPFChart> charts = new ArrayList<>();
+		for (XWPFHeaderFooter headerFooter : headerFooters) {
+			for (POIXMLDocumentPart part : headerFooter.getRelations()) {
+				if (part instanceof XWPFChart && !charts.contains(part)) {
+					charts.add((XWPFChart) part);
+				}
+			}
+		}
+		return charts;
+	}
+
 	/**
 	 * 循环word中所有图表,找出需要进行模板解析的图表
 	 * 
@@ -286,9 +284,6 @@ public class TemplateResolver extends AbstractResolver {
 		if (null == chart) {
 			return metaTemplates;
 		}
-		// current iterable templates state
-		Deque<BlockTemplate> stack = new LinkedList<BlockTemplate>();
-
 		XSSFWorkbook workbook = null;
 		try {
 			workbook = chart.getWorkbook();
@@ -316,13 +311,14 @@ public class TemplateResolver extends AbstractResolver {
 			Matcher matcher = templatePattern.matcher(cellValue);
 			if (matcher.find()) {
 				String tagName = matcher.group();
-				this.resolveXWPFChart(chart, tagName, metaTemplates, stack);
+				this.resolveXWPFChart(chart, tagName, metaTemplates);
 			}
+		} catch (ResolverException e) {
+			throw e;
 		} catch (Exception e) {
 			e.printStackTrace();
 			logger.error("", e);
 		}
-		checkStack(stack);
 		return metaTemplates;
 	}
 
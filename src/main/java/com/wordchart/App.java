@@ -1,13 +1,97 @@
 package com.wordchart;
 
+import java.io.ByteArrayInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import com.deepoove.poi.config.Configure;
+import com.deepoove.poi.exception.ResolverException;
+import com.wordchart.load.ChartDataGenerator;
+import com.wordchart.load.LoadOptions;
+import com.wordchart.load.LoadReport;
+import com.wordchart.load.LoadRunner;
+import com.wordchart.render.ChartPartRenderer;
+import com.wordchart.render.ChartTemplates;
+import com.wordchart.render.DocumentRenderer;
+
 /**
- * Hello world!
+ * 图表渲染压测工具,参数见{@link LoadOptions#usage()}
  *
+ * <pre>
+ * java com.wordchart.App --template 模板.docx --series 3 --points 12 --concurrency 4 --duration 30 --warmup 10
+ * </pre>
  */
-public class App 
-{
-    public static void main( String[] args )
-    {
-        System.out.println( "Hello World!" );
-    }
+public class App {
+
+	// 预先生成的数据份数
+	private static final int MODEL_COUNT = 16;
+
+	public static void main(String[] args) throws Exception {
+		LoadOptions options;
+		try {
+			options = LoadOptions.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(LoadOptions.usage());
+			System.exit(2);
+			return;
+		}
+
+		byte[] templateBytes = ChartTemplates.readTemplate(options.getTemplate());
+		List<String> tagNames = ChartTemplates.chartTagNames(templateBytes);
+		if (tagNames.isEmpty()) {
+			System.err.println("No chart tag found in template");
+			System.exit(2);
+			return;
+		}
+		if (options.getCharts() < tagNames.size()) {
+			tagNames = tagNames.subList(0, options.getCharts());
+		} else if (options.getCharts() != Integer.MAX_VALUE && options.getCharts() > tagNames.size()) {
+			System.err.println("Template only has " + tagNames.size() + " charts, --charts " + options.getCharts()
+					+ " is ignored");
+		}
+
+		// 图表区块的数据为--items份图表数据的列表
+		Set<String> blockTagNames = ChartTemplates.chartBlockTagNames(templateBytes);
+		List<Object> models = new ArrayList<Object>();
+		for (int i = 0; i < MODEL_COUNT; i++) {
+			models.add(new ChartDataGenerator(options.getSeries(), options.getPoints(), options.getPayload(), i)
+					.model(tagNames, blockTagNames, options.getItems()));
+		}
+
+		Configure config = ChartTemplates.chartConfigure(templateBytes);
+		DocumentRenderer renderer;
+		if (LoadOptions.RENDERER_FAST.equals(options.getRenderer())) {
+			try {
+				renderer = ChartPartRenderer.compile(new ByteArrayInputStream(templateBytes), config)::render;
+			} catch (ResolverException e) {
+				// 如图表区块只能使用xwpf渲染
+				System.err.println("Template cannot use --renderer fast: " + e.getMessage());
+				System.exit(2);
+				return;
+			}
+		} else {
+			renderer = DocumentRenderer.xwpf(templateBytes, config);
+		}
+
+		LoadReport report = new LoadRunner(options, renderer, models).run();
+		System.out.println(report.toText());
+		writeJson(options.getJson(), report.toJson());
+	}
+
+	private static void writeJson(String path, String json) throws IOException {
+		if (path == null) {
+			System.out.println(json);
+			return;
+		}
+		try (OutputStream out = new FileOutputStream(path)) {
+			out.write(json.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
 }
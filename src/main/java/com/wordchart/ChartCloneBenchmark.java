@@ -0,0 +1,98 @@
+package com.wordchart;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.apache.poi.xwpf.usermodel.XWPFChart;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.deepoove.poi.config.Configure;
+import com.wordchart.load.ChartDataGenerator;
+import com.wordchart.load.LoadRunner;
+import com.wordchart.render.ChartTemplates;
+import com.wordchart.render.DocumentRenderer;
+
+/**
+ * 图表区块的耗时与内存分配:把模板中的第一个图表改为区块{{?charts}},分别复制1~1000个图表
+ *
+ * <pre>
+ * 参数: [模板路径] [系列数] [每个系列的数据点数]
+ * </pre>
+ */
+public class ChartCloneBenchmark {
+
+	private static final String TAG_NAME = "charts";
+
+	private static final int[] REPETITIONS = { 1, 10, 100, 1000 };
+
+	public static void main(String[] args) throws Exception {
+		byte[] templateBytes = iterableTemplate(ChartTemplates.readTemplate(args.length > 0 ? args[0] : null));
+		int series = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		int points = args.length > 2 ? Integer.parseInt(args[2]) : 12;
+
+		Configure config = ChartTemplates.chartConfigure(templateBytes);
+		DocumentRenderer renderer = DocumentRenderer.xwpf(templateBytes, config);
+		ChartDataGenerator generator = new ChartDataGenerator(series, points, 0, 0);
+
+		// 预热
+		JSONObject warmup = model(generator, 10);
+		for (int i = 0; i < 50; i++) {
+			renderer.render(warmup);
+		}
+
+		for (int repetitions : REPETITIONS) {
+			JSONObject params = model(generator, repetitions);
+			byte[] bytes = renderer.render(params);
+			int charts = countCharts(bytes);
+			if (charts != repetitions) {
+				throw new IllegalStateException("Expected " + repetitions + " charts, but was " + charts);
+			}
+
+			int docs = Math.max(3, 2000 / repetitions);
+			long allocated = LoadRunner.allocatedBytes();
+			long start = System.nanoTime();
+			for (int i = 0; i < docs; i++) {
+				renderer.render(params);
+			}
+			long nanos = System.nanoTime() - start;
+			allocated = LoadRunner.allocatedBytes() - allocated;
+			double millis = nanos / 1e6 / docs;
+			System.out.println(String.format(
+					"%5d charts %5d docs %10.2f ms/doc %8.3f ms/chart %10d KB/doc %8.1f KB/chart %8d KB output",
+					repetitions, docs, millis, millis / repetitions, allocated / docs / 1024,
+					allocated / docs / 1024.0 / repetitions, bytes.length / 1024));
+		}
+	}
+
+	private static JSONObject model(ChartDataGenerator generator, int repetitions) {
+		JSONArray items = new JSONArray(repetitions);
+		for (int i = 0; i < repetitions; i++) {
+			items.add(generator.rows());
+		}
+		JSONObject model = new JSONObject();
+		model.put(TAG_NAME, items);
+		return model;
+	}
+
+	/**
+	 * 把第一个图表EXCEL的首个单元格改为区块标签
+	 */
+	private static byte[] iterableTemplate(byte[] templateBytes) throws Exception {
+		try (XWPFDocument doc = new XWPFDocument(new ByteArrayInputStream(templateBytes))) {
+			XWPFChart chart = doc.getCharts().get(0);
+			chart.getWorkbook().getSheetAt(0).getRow(0).getCell(0).setCellValue("{{?" + TAG_NAME + "}}");
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			doc.write(out);
+			return out.toByteArray();
+		}
+	}
+
+	private static int countCharts(byte[] bytes) throws Exception {
+		try (XWPFDocument doc = new XWPFDocument(new ByteArrayInputStream(bytes))) {
+			return doc.getCharts().size();
+		}
+	}
+
+}
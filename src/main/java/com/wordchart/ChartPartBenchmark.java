@@ -0,0 +1,65 @@
+package com.wordchart;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import com.alibaba.fastjson.JSONObject;
+import com.deepoove.poi.config.Configure;
+import com.wordchart.load.ChartDataGenerator;
+import com.wordchart.load.LoadRunner;
+import com.wordchart.render.ChartPartRenderer;
+import com.wordchart.render.ChartPartVerifier;
+import com.wordchart.render.ChartTemplates;
+import com.wordchart.render.DocumentRenderer;
+
+/**
+ * 对比常规渲染(MyChartPolicy)与图表快速渲染(ChartPartRenderer)的耗时与内存分配
+ *
+ * <pre>
+ * 参数: [模板路径] [文档数] [系列数] [每个系列的数据点数]
+ * </pre>
+ */
+public class ChartPartBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		byte[] templateBytes = ChartTemplates.readTemplate(args.length > 0 ? args[0] : null);
+		int docs = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+		int series = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+		int points = args.length > 3 ? Integer.parseInt(args[3]) : 12;
+
+		Configure config = ChartTemplates.chartConfigure(templateBytes);
+		DocumentRenderer policyRenderer = DocumentRenderer.xwpf(templateBytes, config);
+		ChartPartRenderer renderer = ChartPartRenderer.compile(new ByteArrayInputStream(templateBytes), config);
+		JSONObject params = new ChartDataGenerator(series, points, 0, 0).model(renderer.getTagNames());
+
+		List<String> differences = ChartPartVerifier.verify(renderer, params);
+		System.out.println("verify: " + (differences.isEmpty() ? "identical" : differences));
+
+		// 预热
+		for (int i = 0; i < Math.max(50, docs / 5); i++) {
+			policyRenderer.render(params);
+			renderer.render(params);
+		}
+
+		long allocated = LoadRunner.allocatedBytes();
+		long start = System.nanoTime();
+		for (int i = 0; i < docs; i++) {
+			policyRenderer.render(params);
+		}
+		report("MyChartPolicy", docs, System.nanoTime() - start, LoadRunner.allocatedBytes() - allocated);
+
+		allocated = LoadRunner.allocatedBytes();
+		start = System.nanoTime();
+		for (int i = 0; i < docs; i++) {
+			renderer.render(params);
+		}
+		report("ChartPartRenderer", docs, System.nanoTime() - start, LoadRunner.allocatedBytes() - allocated);
+	}
+
+	private static void report(String name, int docs, long nanos, long allocated) {
+		double millis = nanos / 1e6;
+		System.out.println(String.format("%-18s %6d docs %10.1f ms %8.3f ms/doc %10.1f docs/s %10d KB/doc", name,
+				docs, millis, millis / docs, docs * 1000 / millis, allocated / docs / 1024));
+	}
+
+}
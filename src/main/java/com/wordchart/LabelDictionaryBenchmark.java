@@ -0,0 +1,72 @@
+package com.wordchart;
+
+import java.io.ByteArrayInputStream;
+
+import com.alibaba.fastjson.JSONObject;
+import com.wordchart.load.ChartDataGenerator;
+import com.wordchart.load.GcMonitor;
+import com.wordchart.load.LoadRunner;
+import com.wordchart.render.ChartPartRenderer;
+import com.wordchart.render.ChartTemplates;
+import com.wordchart.render.LabelDictionary;
+
+/**
+ * 对比图表快速渲染使用与不使用标签字典时,一批文档的内存分配、GC与耗时。
+ * 每份文档的数值不同,横坐标与系列名相同,与批量报表的情况一致
+ *
+ * <pre>
+ * 参数: [模板路径] [文档数] [系列数] [每个系列的数据点数]
+ * </pre>
+ */
+public class LabelDictionaryBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		byte[] templateBytes = ChartTemplates.readTemplate(args.length > 0 ? args[0] : null);
+		int docs = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+		int series = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+		int points = args.length > 3 ? Integer.parseInt(args[3]) : 12;
+
+		ChartPartRenderer renderer = ChartPartRenderer.compile(new ByteArrayInputStream(templateBytes),
+				ChartTemplates.chartConfigure(templateBytes));
+
+		// 预热
+		run(renderer, null, Math.max(100, docs / 10), series, points);
+		run(renderer, new LabelDictionary(), Math.max(100, docs / 10), series, points);
+
+		report("no dictionary", run(renderer, null, docs, series, points));
+		LabelDictionary labelDictionary = new LabelDictionary();
+		report("dictionary", run(renderer, labelDictionary, docs, series, points));
+		System.out.println("dictionary labels: " + labelDictionary.size());
+	}
+
+	private static long[] run(ChartPartRenderer renderer, LabelDictionary labelDictionary, int docs, int series,
+			int points) throws Exception {
+		renderer.setLabelDictionary(labelDictionary);
+		ChartDataGenerator generator = new ChartDataGenerator(series, points, 0, 0);
+		System.gc();
+		GcMonitor gcMonitor = new GcMonitor();
+		gcMonitor.start();
+		long allocated = 0;
+		long nanos = 0;
+		for (int i = 0; i < docs; i++) {
+			// 数据生成不计入
+			JSONObject params = generator.model(renderer.getTagNames());
+			long allocatedBefore = LoadRunner.allocatedBytes();
+			long start = System.nanoTime();
+			renderer.render(params);
+			nanos += System.nanoTime() - start;
+			allocated += LoadRunner.allocatedBytes() - allocatedBefore;
+		}
+		gcMonitor.stop();
+		return new long[] { docs, nanos, allocated, gcMonitor.getPauses(), gcMonitor.getTotalMillis() };
+	}
+
+	private static void report(String name, long[] result) {
+		long docs = result[0];
+		double millis = result[1] / 1e6;
+		System.out.println(String.format(
+				"%-14s %6d docs %10.1f ms %8.3f ms/doc %10.1f KB/doc %8d MB total, gc %d pauses %dms", name, docs,
+				millis, millis / docs, result[2] / docs / 1024.0, result[2] / 1024 / 1024, result[3], result[4]));
+	}
+
+}
@@ -0,0 +1,333 @@
+package com.wordchart.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.wordchart.load.LatencyRecorder;
+import com.wordchart.load.LoadOptions;
+
+/**
+ * 多进程批量渲染:把一批任务(模板 + 数据文件)放入共享目录,启动N个子JVM作为worker领取渲染。
+ * worker崩溃或OOM退出后,coordinator把它未完成的任务放回队列重试,并按需重新启动worker,
+ * 最后合并各worker的统计
+ *
+ * <pre>
+ * 参数: --template &lt;docx&gt; --data &lt;数据目录&gt; --output &lt;输出目录&gt;
+ *       [--workers 4] [--work &lt;工作目录&gt;] [--retries 2] [--max-crashes 10] [--heap 512m]
+ *       [--renderer xwpf|fast] [--json &lt;file&gt;]
+ * </pre>
+ *
+ * 连续max-crashes个worker异常退出且期间没有任务完成或失败时(如JVM参数错误、worker启动即崩溃),
+ * 不再重启worker,剩余任务记为失败
+ * <p>
+ * 未指定--work时工作目录位于系统临时目录,全部任务成功后删除,有失败任务时保留以便查看worker日志
+ * </p>
+ */
+public class BatchCoordinator {
+
+	private static Logger logger = LoggerFactory.getLogger(BatchCoordinator.class);
+
+	private static final long POLL_MILLIS = 100;
+
+	// 放弃整批任务时领取剩余任务使用的id
+	private static final String COORDINATOR_ID = "coordinator";
+
+	private String template;
+	private Path dataDir;
+	private Path outputDir;
+	private Path workDir;
+	// 工作目录由coordinator创建,结束后可删除
+	private boolean tempWorkDir;
+	private int workers = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+	private int retries = 2;
+	private int maxCrashes = 10;
+	private String heap = "512m";
+	private String renderer = LoadOptions.RENDERER_XWPF;
+	private String json;
+
+	private WorkQueue queue;
+
+	private int restarts;
+
+	// 连续异常退出且没有任务完成的worker数
+	private int crashes;
+
+	private boolean aborted;
+
+	public static void main(String[] args) throws Exception {
+		BatchCoordinator coordinator = new BatchCoordinator();
+		try {
+			coordinator.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println("Usage: BatchCoordinator --template <docx> --data <dir> --output <dir> [--workers N]"
+					+ " [--work <dir>] [--retries 2] [--max-crashes 10] [--heap 512m] [--renderer xwpf|fast]"
+					+ " [--json <file>]");
+			System.exit(2);
+			return;
+		}
+		JSONObject report = coordinator.run();
+		System.out.println(coordinator.toText(report));
+		if (coordinator.json == null) {
+			System.out.println(report.toJSONString());
+		} else {
+			Files.write(Paths.get(coordinator.json), report.toJSONString().getBytes(StandardCharsets.UTF_8));
+		}
+		System.exit(report.getIntValue("failed") == 0 ? 0 : 1);
+	}
+
+	private void parse(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			String name = args[i];
+			if (!name.startsWith("--") || i + 1 >= args.length) {
+				throw new IllegalArgumentException("Invalid argument: " + name);
+			}
+			String value = args[++i];
+			switch (name.substring(2)) {
+			case "template":
+				template = value;
+				break;
+			case "data":
+				dataDir = Paths.get(value);
+				break;
+			case "output":
+				outputDir = Paths.get(value);
+				break;
+			case "work":
+				workDir = Paths.get(value);
+				break;
+			case "workers":
+				workers = Integer.parseInt(value);
+				break;
+			case "retries":
+				retries = Integer.parseInt(value);
+				break;
+			case "max-crashes":
+				maxCrashes = Integer.parseInt(value);
+				break;
+			case "heap":
+				heap = value;
+				break;
+			case "renderer":
+				renderer = LoadOptions.oneOf(name, value, LoadOptions.RENDERER_XWPF, LoadOptions.RENDERER_FAST);
+				break;
+			case "json":
+				json = value;
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown argument: " + name);
+			}
+		}
+		if (template == null || dataDir == null || outputDir == null) {
+			throw new IllegalArgumentException("--template, --data and --output are required");
+		}
+		if (workers <= 0) {
+			throw new IllegalArgumentException("--workers must be positive: " + workers);
+		}
+		if (maxCrashes <= 0) {
+			throw new IllegalArgumentException("--max-crashes must be positive: " + maxCrashes);
+		}
+	}
+
+	public JSONObject run() throws IOException, InterruptedException {
+		if (workDir == null) {
+			workDir = Files.createTempDirectory("wordchart-batch-");
+			tempWorkDir = true;
+		}
+		queue = new WorkQueue(workDir);
+		int total = enqueueJobs();
+		logger.info("Enqueued {} jobs into {}, starting {} workers", total, workDir, workers);
+
+		long start = System.nanoTime();
+		Process[] processes = new Process[workers];
+		String[] workerIds = new String[workers];
+		int generation = 0;
+		int finished = 0;
+		while (true) {
+			int pending = queue.pending();
+			int alive = 0;
+			for (int slot = 0; slot < workers; slot++) {
+				Process process = processes[slot];
+				if (process != null && !process.isAlive()) {
+					int exitValue = process.exitValue();
+					if (exitValue != 0) {
+						String reason = "worker exited with " + exitValue;
+						int requeued = queue.recover(workerIds[slot], retries, reason);
+						logger.warn("Worker {} exited with {}, {} jobs requeued", workerIds[slot], exitValue,
+								requeued);
+						pending += requeued;
+						restarts++;
+						// 上次异常退出后有任务完成或失败,说明worker仍能推进
+						int nowFinished = queue.finished();
+						crashes = nowFinished > finished ? 1 : crashes + 1;
+						finished = nowFinished;
+						if (!aborted && crashes >= maxCrashes) {
+							logger.error("{} workers crashed in a row without finishing a job, see {}", crashes,
+									workDir.resolve("logs"));
+							aborted = true;
+						}
+						if (aborted) {
+							pending -= queue.failPending(COORDINATOR_ID,
+									reason + ", aborted after " + crashes + " consecutive worker crashes");
+						}
+					}
+					processes[slot] = null;
+				}
+				if (processes[slot] == null && pending > 0 && !aborted) {
+					workerIds[slot] = "w" + slot + "-" + generation++;
+					processes[slot] = startWorker(workerIds[slot]);
+				}
+				if (processes[slot] != null) {
+					alive++;
+				}
+			}
+			if (alive == 0 && (pending == 0 || aborted)) {
+				break;
+			}
+			Thread.sleep(POLL_MILLIS);
+		}
+		JSONObject report = report(total, System.nanoTime() - start);
+		if (tempWorkDir) {
+			if (report.getIntValue("failed") == 0) {
+				deleteRecursively(workDir);
+			} else {
+				logger.warn("Work directory kept for failed jobs: {}", workDir);
+			}
+		}
+		return report;
+	}
+
+	private static void deleteRecursively(Path dir) throws IOException {
+		List<Path> paths = new ArrayList<Path>();
+		try (Stream<Path> stream = Files.walk(dir)) {
+			stream.forEach(paths::add);
+		}
+		// 先删除子文件、子目录
+		Collections.reverse(paths);
+		for (Path path : paths) {
+			Files.deleteIfExists(path);
+		}
+	}
+
+	private int enqueueJobs() throws IOException {
+		String templatePath = Paths.get(template).toAbsolutePath().toString();
+		List<Path> dataFiles = new ArrayList<Path>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dataDir, "*.json")) {
+			for (Path dataFile : stream) {
+				dataFiles.add(dataFile);
+			}
+		}
+		for (Path dataFile : dataFiles) {
+			String fileName = dataFile.getFileName().toString();
+			String id = fileName.substring(0, fileName.length() - ".json".length());
+			queue.enqueue(new BatchJob(id, templatePath, dataFile.toAbsolutePath().toString(),
+					outputDir.resolve(id + ".docx").toAbsolutePath().toString()));
+		}
+		return dataFiles.size();
+	}
+
+	private Process startWorker(String workerId) throws IOException {
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		List<String> command = new ArrayList<String>();
+		command.add(java);
+		command.add("-Xmx" + heap);
+		// OOM时立即退出,由coordinator重试其任务
+		command.add("-XX:+ExitOnOutOfMemoryError");
+		command.add("-Dfile.encoding=UTF-8");
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(BatchWorker.class.getName());
+		command.add(workDir.toAbsolutePath().toString());
+		command.add(workerId);
+		command.add(renderer);
+		File log = Files.createDirectories(workDir.resolve("logs")).resolve(workerId + ".log").toFile();
+		logger.info("Start worker {}", workerId);
+		return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+	}
+
+	private JSONObject report(int total, long elapsedNanos) throws IOException {
+		LatencyRecorder recorder = new LatencyRecorder();
+		Map<String, Integer> docsPerWorker = new TreeMap<String, Integer>();
+		for (BatchJob job : queue.done()) {
+			recorder.record(job.getRenderNanos(), job.getAllocatedBytes());
+			Integer docs = docsPerWorker.get(job.getWorker());
+			docsPerWorker.put(job.getWorker(), docs == null ? 1 : docs + 1);
+		}
+		List<BatchJob> failed = queue.failed();
+
+		int gcPauses = 0;
+		long gcTotalMillis = 0;
+		long gcMaxMillis = 0;
+		for (String metrics : queue.metrics()) {
+			JSONObject workerMetrics = JSON.parseObject(metrics);
+			gcPauses += workerMetrics.getIntValue("gcPauses");
+			gcTotalMillis += workerMetrics.getLongValue("gcTotalMillis");
+			gcMaxMillis = Math.max(gcMaxMillis, workerMetrics.getLongValue("gcMaxMillis"));
+		}
+
+		long[] latencies = recorder.sortedLatencies();
+		JSONObject report = new JSONObject(true);
+		report.put("workers", workers);
+		report.put("renderer", renderer);
+		report.put("jobs", total);
+		report.put("done", recorder.getCount());
+		report.put("failed", failed.size());
+		report.put("restarts", restarts);
+		report.put("aborted", aborted);
+		report.put("elapsedMillis", elapsedNanos / 1000000);
+		report.put("throughput", elapsedNanos <= 0 ? 0 : recorder.getCount() * 1e9 / elapsedNanos);
+		JSONObject latency = new JSONObject(true);
+		latency.put("p50", LatencyRecorder.percentileMillis(latencies, 50));
+		latency.put("p95", LatencyRecorder.percentileMillis(latencies, 95));
+		latency.put("p99", LatencyRecorder.percentileMillis(latencies, 99));
+		latency.put("max", LatencyRecorder.percentileMillis(latencies, 100));
+		report.put("renderLatencyMillis", latency);
+		JSONObject gc = new JSONObject(true);
+		gc.put("pauses", gcPauses);
+		gc.put("totalMillis", gcTotalMillis);
+		gc.put("maxMillis", gcMaxMillis);
+		report.put("gc", gc);
+		report.put("allocatedBytesPerDoc",
+				recorder.getCount() == 0 ? 0 : recorder.getAllocatedBytes() / recorder.getCount());
+		report.put("docsPerWorker", docsPerWorker);
+		List<String> failedJobs = new ArrayList<String>();
+		for (BatchJob job : failed) {
+			failedJobs.add(job.getId() + ": " + job.getError());
+		}
+		report.put("failedJobs", failedJobs);
+		return report;
+	}
+
+	private String toText(JSONObject report) {
+		JSONObject latency = report.getJSONObject("renderLatencyMillis");
+		JSONObject gc = report.getJSONObject("gc");
+		return String.format(
+				"workers=%d renderer=%s jobs=%d done=%d failed=%d restarts=%d%n"
+						+ "elapsed=%dms throughput=%.1f docs/s%n"
+						+ "render latency ms: p50=%.2f p95=%.2f p99=%.2f max=%.2f%n"
+						+ "gc pauses: count=%d total=%dms max=%dms%n" + "allocation: %d KB/doc%n" + "docs per worker: %s",
+				workers, renderer, report.getIntValue("jobs"), report.getIntValue("done"),
+				report.getIntValue("failed"), restarts, report.getLongValue("elapsedMillis"),
+				report.getDoubleValue("throughput"), latency.getDoubleValue("p50"), latency.getDoubleValue("p95"),
+				latency.getDoubleValue("p99"), latency.getDoubleValue("max"), gc.getIntValue("pauses"),
+				gc.getLongValue("totalMillis"), gc.getLongValue("maxMillis"),
+				report.getLongValue("allocatedBytesPerDoc") / 1024, report.get("docsPerWorker"));
+	}
+
+}
@@ -0,0 +1,115 @@
+package com.wordchart.batch;
+
+/**
+ * 批量渲染任务,同时也是任务结果,以JSON文件的形式在工作目录中流转
+ */
+public class BatchJob {
+
+	private String id;
+
+	private String template;
+
+	// 数据文件,内容为JSON对象
+	private String data;
+
+	private String output;
+
+	// 因worker崩溃而重试的次数
+	private int attempts;
+
+	private String worker;
+
+	private String error;
+
+	private long renderNanos;
+
+	private long allocatedBytes;
+
+	public BatchJob() {
+	}
+
+	public BatchJob(String id, String template, String data, String output) {
+		this.id = id;
+		this.template = template;
+		this.data = data;
+		this.output = output;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getTemplate() {
+		return template;
+	}
+
+	public void setTemplate(String template) {
+		this.template = template;
+	}
+
+	public String getData() {
+		return data;
+	}
+
+	public void setData(String data) {
+		this.data = data;
+	}
+
+	public String getOutput() {
+		return output;
+	}
+
+	public void setOutput(String output) {
+		this.output = output;
+	}
+
+	public int getAttempts() {
+		return attempts;
+	}
+
+	public void setAttempts(int attempts) {
+		this.attempts = attempts;
+	}
+
+	public String getWorker() {
+		return worker;
+	}
+
+	public void setWorker(String worker) {
+		this.worker = worker;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	public void setError(String error) {
+		this.error = error;
+	}
+
+	public long getRenderNanos() {
+		return renderNanos;
+	}
+
+	public void setRenderNanos(long renderNanos) {
+		this.renderNanos = renderNanos;
+	}
+
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	public void setAllocatedBytes(long allocatedBytes) {
+		this.allocatedBytes = allocatedBytes;
+	}
+
+	@Override
+	public String toString() {
+		return id;
+	}
+
+}
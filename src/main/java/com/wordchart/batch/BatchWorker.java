@@ -0,0 +1,133 @@
+package com.wordchart.batch;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.deepoove.poi.config.Configure;
+import com.deepoove.poi.exception.ResolverException;
+import com.wordchart.load.GcMonitor;
+import com.wordchart.load.LoadOptions;
+import com.wordchart.load.LoadRunner;
+import com.wordchart.render.ChartPartRenderer;
+import com.wordchart.render.ChartTemplates;
+import com.wordchart.render.DocumentRenderer;
+
+/**
+ * worker进程:从共享目录中逐个领取任务并渲染,队列为空时退出
+ *
+ * <pre>
+ * 参数: &lt;工作目录&gt; &lt;workerId&gt; &lt;xwpf|fast&gt;
+ * </pre>
+ */
+public class BatchWorker {
+
+	private static Logger logger = LoggerFactory.getLogger(BatchWorker.class);
+
+	private final WorkQueue queue;
+
+	private final String workerId;
+
+	private final String rendererName;
+
+	// 按模板路径缓存
+	private final Map<String, DocumentRenderer> renderers = new HashMap<String, DocumentRenderer>();
+
+	public BatchWorker(WorkQueue queue, String workerId, String rendererName) {
+		this.queue = queue;
+		this.workerId = workerId;
+		this.rendererName = rendererName;
+	}
+
+	public static void main(String[] args) throws Exception {
+		WorkQueue queue = new WorkQueue(Paths.get(args[0]));
+		new BatchWorker(queue, args[1], args.length > 2 ? args[2] : LoadOptions.RENDERER_XWPF).run();
+	}
+
+	public void run() throws Exception {
+		GcMonitor gcMonitor = new GcMonitor();
+		gcMonitor.start();
+		long start = System.nanoTime();
+		int docs = 0;
+		int errors = 0;
+		BatchJob job;
+		while ((job = queue.claim(workerId)) != null) {
+			job.setWorker(workerId);
+			try {
+				render(job);
+				queue.complete(workerId, job);
+				docs++;
+			} catch (Exception e) {
+				// 渲染本身的异常重试也无济于事,直接记为失败
+				logger.error("Render job " + job + " failed", e);
+				job.setError(String.valueOf(e));
+				queue.fail(workerId, job);
+				errors++;
+			}
+		}
+		gcMonitor.stop();
+
+		JSONObject metrics = new JSONObject(true);
+		metrics.put("worker", workerId);
+		metrics.put("docs", docs);
+		metrics.put("errors", errors);
+		metrics.put("elapsedNanos", System.nanoTime() - start);
+		metrics.put("gcPauses", gcMonitor.getPauses());
+		metrics.put("gcTotalMillis", gcMonitor.getTotalMillis());
+		metrics.put("gcMaxMillis", gcMonitor.getMaxMillis());
+		queue.writeMetrics(workerId, metrics.toJSONString());
+		logger.info("Worker {} finished {} jobs", workerId, docs);
+	}
+
+	private void render(BatchJob job) throws Exception {
+		DocumentRenderer renderer = renderer(job.getTemplate());
+		Object model = JSON.parseObject(new String(Files.readAllBytes(Paths.get(job.getData())),
+				StandardCharsets.UTF_8));
+		long allocated = LoadRunner.allocatedBytes();
+		long start = System.nanoTime();
+		byte[] bytes = renderer.render(model);
+		job.setRenderNanos(System.nanoTime() - start);
+		job.setAllocatedBytes(LoadRunner.allocatedBytes() - allocated);
+
+		// 先写临时文件,重试时不会留下不完整的文档
+		Path output = Paths.get(job.getOutput()).toAbsolutePath();
+		Files.createDirectories(output.getParent());
+		Path tmp = output.resolveSibling(output.getFileName() + "." + workerId + ".tmp");
+		Files.write(tmp, bytes);
+		Files.move(tmp, output, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private DocumentRenderer renderer(String template) throws Exception {
+		DocumentRenderer renderer = renderers.get(template);
+		if (renderer != null) {
+			return renderer;
+		}
+		byte[] templateBytes = ChartTemplates.readTemplate(template);
+		Configure config = ChartTemplates.chartConfigure(templateBytes);
+		if (LoadOptions.RENDERER_FAST.equals(rendererName)) {
+			try {
+				ChartPartRenderer chartPartRenderer = ChartPartRenderer
+						.compile(new ByteArrayInputStream(templateBytes), config);
+				renderer = chartPartRenderer::render;
+			} catch (ResolverException e) {
+				logger.warn("Template {} cannot use the chart part fast path: {}", template, e.getMessage());
+			}
+		}
+		if (renderer == null) {
+			renderer = DocumentRenderer.xwpf(templateBytes, config);
+		}
+		renderers.put(template, renderer);
+		return renderer;
+	}
+
+}
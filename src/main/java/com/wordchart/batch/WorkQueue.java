@@ -0,0 +1,218 @@
+package com.wordchart.batch;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+import com.alibaba.fastjson.JSON;
+
+/**
+ * 基于本地目录的任务队列,coordinator与各worker进程共享:
+ * <ul>
+ * <li>queue/ 待处理任务</li>
+ * <li>claimed/&lt;worker&gt;/ worker通过原子rename领取的任务,worker崩溃后由coordinator放回queue</li>
+ * <li>done/ 已完成任务及耗时</li>
+ * <li>failed/ 失败任务</li>
+ * <li>metrics/ worker退出时写入的统计</li>
+ * </ul>
+ * worker每次只领取一个任务,处理得快的worker自然领取得多
+ */
+public class WorkQueue {
+
+	private static final String SUFFIX = ".json";
+
+	private final Path queueDir;
+	private final Path claimedDir;
+	private final Path doneDir;
+	private final Path failedDir;
+	private final Path metricsDir;
+	private final Path tmpDir;
+
+	// worker侧缓存的待领取任务,领取失败说明已被其他worker领走
+	private final Deque<Path> candidates = new ArrayDeque<Path>();
+
+	private final Random random = new Random();
+
+	public WorkQueue(Path root) throws IOException {
+		this.queueDir = Files.createDirectories(root.resolve("queue"));
+		this.claimedDir = Files.createDirectories(root.resolve("claimed"));
+		this.doneDir = Files.createDirectories(root.resolve("done"));
+		this.failedDir = Files.createDirectories(root.resolve("failed"));
+		this.metricsDir = Files.createDirectories(root.resolve("metrics"));
+		this.tmpDir = Files.createDirectories(root.resolve("tmp"));
+	}
+
+	public void enqueue(BatchJob job) throws IOException {
+		write(queueDir.resolve(job.getId() + SUFFIX), JSON.toJSONString(job));
+	}
+
+	/**
+	 * 领取一个任务
+	 *
+	 * @param workerId
+	 * @return 队列为空时返回null
+	 * @throws IOException
+	 */
+	public BatchJob claim(String workerId) throws IOException {
+		Path workerDir = Files.createDirectories(claimedDir.resolve(workerId));
+		while (true) {
+			if (candidates.isEmpty()) {
+				List<Path> files = list(queueDir);
+				if (files.isEmpty()) {
+					return null;
+				}
+				// 打乱顺序以减少多个worker争抢同一个任务
+				Collections.shuffle(files, random);
+				candidates.addAll(files);
+			}
+			Path candidate = candidates.poll();
+			Path target = workerDir.resolve(candidate.getFileName());
+			try {
+				Files.move(candidate, target, StandardCopyOption.ATOMIC_MOVE);
+			} catch (NoSuchFileException e) {
+				continue;
+			}
+			return read(target);
+		}
+	}
+
+	public void complete(String workerId, BatchJob job) throws IOException {
+		write(doneDir.resolve(job.getId() + SUFFIX), JSON.toJSONString(job));
+		Files.deleteIfExists(claimedDir.resolve(workerId).resolve(job.getId() + SUFFIX));
+	}
+
+	public void fail(String workerId, BatchJob job) throws IOException {
+		write(failedDir.resolve(job.getId() + SUFFIX), JSON.toJSONString(job));
+		Files.deleteIfExists(claimedDir.resolve(workerId).resolve(job.getId() + SUFFIX));
+	}
+
+	/**
+	 * worker异常退出后,将其已领取但未完成的任务放回队列,超过重试次数的记为失败
+	 *
+	 * @param workerId
+	 * @param retries
+	 * @param reason
+	 * @return 放回队列的任务数
+	 * @throws IOException
+	 */
+	public int recover(String workerId, int retries, String reason) throws IOException {
+		Path workerDir = claimedDir.resolve(workerId);
+		if (!Files.isDirectory(workerDir)) {
+			return 0;
+		}
+		int requeued = 0;
+		for (Path file : list(workerDir)) {
+			// 结果已写入,只是没来得及删除
+			if (Files.exists(doneDir.resolve(file.getFileName()))) {
+				Files.deleteIfExists(file);
+				continue;
+			}
+			BatchJob job = read(file);
+			job.setAttempts(job.getAttempts() + 1);
+			job.setWorker(workerId);
+			if (job.getAttempts() > retries) {
+				job.setError(reason);
+				fail(workerId, job);
+			} else {
+				enqueue(job);
+				Files.deleteIfExists(file);
+				requeued++;
+			}
+		}
+		return requeued;
+	}
+
+	/**
+	 * 放弃整批任务时,将队列中所有待处理任务记为失败
+	 *
+	 * @param workerId 领取任务时使用的id
+	 * @param reason
+	 * @return 记为失败的任务数
+	 * @throws IOException
+	 */
+	public int failPending(String workerId, String reason) throws IOException {
+		int failed = 0;
+		BatchJob job;
+		// 与worker一样先领取,避免与仍在运行的worker重复处理
+		while ((job = claim(workerId)) != null) {
+			job.setError(reason);
+			fail(workerId, job);
+			failed++;
+		}
+		return failed;
+	}
+
+	public int pending() throws IOException {
+		return list(queueDir).size();
+	}
+
+	/**
+	 * @return 已完成与失败的任务数
+	 * @throws IOException
+	 */
+	public int finished() throws IOException {
+		return list(doneDir).size() + list(failedDir).size();
+	}
+
+	public List<BatchJob> done() throws IOException {
+		return readAll(doneDir);
+	}
+
+	public List<BatchJob> failed() throws IOException {
+		return readAll(failedDir);
+	}
+
+	public void writeMetrics(String workerId, String json) throws IOException {
+		write(metricsDir.resolve(workerId + SUFFIX), json);
+	}
+
+	public List<String> metrics() throws IOException {
+		List<String> metrics = new ArrayList<String>();
+		for (Path file : list(metricsDir)) {
+			metrics.add(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+		}
+		return metrics;
+	}
+
+	private List<BatchJob> readAll(Path dir) throws IOException {
+		List<BatchJob> jobs = new ArrayList<BatchJob>();
+		for (Path file : list(dir)) {
+			jobs.add(read(file));
+		}
+		return jobs;
+	}
+
+	private static BatchJob read(Path file) throws IOException {
+		return JSON.parseObject(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), BatchJob.class);
+	}
+
+	/**
+	 * 先写临时文件再原子rename,其他进程不会读到写了一半的文件
+	 */
+	private void write(Path file, String content) throws IOException {
+		Path tmp = Files.createTempFile(tmpDir, null, SUFFIX);
+		Files.write(tmp, content.getBytes(StandardCharsets.UTF_8));
+		Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static List<Path> list(Path dir) throws IOException {
+		List<Path> files = new ArrayList<Path>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+			for (Path file : stream) {
+				files.add(file);
+			}
+		}
+		return files;
+	}
+
+}
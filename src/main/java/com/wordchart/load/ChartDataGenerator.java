@@ -0,0 +1,96 @@
+package com.wordchart.load;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+/**
+ * 生成图表数据,格式与MyChartPolicy一致:首行为系列名,首列为横坐标,其余为数值
+ */
+public class ChartDataGenerator {
+
+	private final int series;
+
+	private final int points;
+
+	// 横坐标、系列名的字符数
+	private final int payload;
+
+	private final Random random;
+
+	public ChartDataGenerator(int series, int points, int payload, long seed) {
+		this.series = series;
+		this.points = points;
+		this.payload = payload;
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * 为每个图表标签生成一份数据
+	 *
+	 * @param tagNames
+	 * @return
+	 */
+	public JSONObject model(List<String> tagNames) {
+		return model(tagNames, Collections.<String> emptySet(), 0);
+	}
+
+	/**
+	 * 为每个图表标签生成一份数据,图表区块生成items份数据的列表
+	 *
+	 * @param tagNames
+	 * @param blockTagNames 图表区块{{?tag}}的标签名,参考ChartTemplates.chartBlockTagNames
+	 * @param items         每个图表区块的图表数
+	 * @return
+	 */
+	public JSONObject model(List<String> tagNames, Set<String> blockTagNames, int items) {
+		JSONObject model = new JSONObject();
+		for (String tagName : tagNames) {
+			if (blockTagNames.contains(tagName)) {
+				JSONArray datas = new JSONArray(items);
+				for (int i = 0; i < items; i++) {
+					datas.add(rows());
+				}
+				model.put(tagName, datas);
+			} else {
+				model.put(tagName, rows());
+			}
+		}
+		return model;
+	}
+
+	public JSONArray rows() {
+		JSONArray rows = new JSONArray(points + 1);
+		JSONArray header = new JSONArray(series + 1);
+		header.add("");
+		for (int serIndex = 0; serIndex < series; serIndex++) {
+			header.add(label("系列" + (serIndex + 1)));
+		}
+		rows.add(header);
+		for (int pointIndex = 0; pointIndex < points; pointIndex++) {
+			JSONArray cols = new JSONArray(series + 1);
+			cols.add(label("类别" + (pointIndex + 1)));
+			for (int serIndex = 0; serIndex < series; serIndex++) {
+				cols.add(String.valueOf(random.nextInt(10000) / 10.0));
+			}
+			rows.add(cols);
+		}
+		return rows;
+	}
+
+	private String label(String name) {
+		if (name.length() >= payload) {
+			return name;
+		}
+		StringBuilder sb = new StringBuilder(payload).append(name);
+		while (sb.length() < payload) {
+			sb.append((char) ('a' + random.nextInt(26)));
+		}
+		return sb.toString();
+	}
+
+}
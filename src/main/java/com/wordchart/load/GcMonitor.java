@@ -0,0 +1,79 @@
+package com.wordchart.load;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * 通过GC通知统计停顿次数与时长,并发收集阶段不计入停顿
+ */
+public class GcMonitor implements NotificationListener {
+
+	private final List<NotificationEmitter> emitters = new ArrayList<NotificationEmitter>();
+
+	private int pauses;
+
+	private long totalMillis;
+
+	private long maxMillis;
+
+	public void start() {
+		for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+			if (gcBean instanceof NotificationEmitter) {
+				NotificationEmitter emitter = (NotificationEmitter) gcBean;
+				emitter.addNotificationListener(this, null, null);
+				emitters.add(emitter);
+			}
+		}
+	}
+
+	public void stop() {
+		for (NotificationEmitter emitter : emitters) {
+			try {
+				emitter.removeNotificationListener(this);
+			} catch (ListenerNotFoundException e) {
+				// 已移除
+			}
+		}
+		emitters.clear();
+	}
+
+	@Override
+	public synchronized void handleNotification(Notification notification, Object handback) {
+		if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+			return;
+		}
+		GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo
+				.from((CompositeData) notification.getUserData());
+		String name = (info.getGcName() + " " + info.getGcAction()).toLowerCase();
+		if (name.contains("concurrent")) {
+			return;
+		}
+		long duration = info.getGcInfo().getDuration();
+		pauses++;
+		totalMillis += duration;
+		maxMillis = Math.max(maxMillis, duration);
+	}
+
+	public synchronized int getPauses() {
+		return pauses;
+	}
+
+	public synchronized long getTotalMillis() {
+		return totalMillis;
+	}
+
+	public synchronized long getMaxMillis() {
+		return maxMillis;
+	}
+
+}
@@ -0,0 +1,95 @@
+package com.wordchart.load;
+
+import java.util.Arrays;
+
+/**
+ * 记录单个线程的渲染耗时与内存分配,非线程安全,结束后通过merge合并
+ */
+public class LatencyRecorder {
+
+	private long[] latencies = new long[1024];
+
+	private int count;
+
+	private int errors;
+
+	private long allocatedBytes;
+
+	private String firstError;
+
+	// 已发起但未记录结果的渲染数,如开环模式超时后丢弃的渲染
+	private long dropped;
+
+	public void record(long latencyNanos, long allocated) {
+		if (count == latencies.length) {
+			latencies = Arrays.copyOf(latencies, count * 2);
+		}
+		latencies[count++] = latencyNanos;
+		allocatedBytes += allocated;
+	}
+
+	public void error(Throwable e) {
+		if (errors++ == 0) {
+			firstError = String.valueOf(e);
+		}
+	}
+
+	public void drop(long renders) {
+		dropped += renders;
+	}
+
+	public void merge(LatencyRecorder other) {
+		for (int i = 0; i < other.count; i++) {
+			record(other.latencies[i], 0);
+		}
+		allocatedBytes += other.allocatedBytes;
+		if (firstError == null) {
+			firstError = other.firstError;
+		}
+		errors += other.errors;
+		dropped += other.dropped;
+	}
+
+	/**
+	 * @return 排序后的耗时(纳秒)
+	 */
+	public long[] sortedLatencies() {
+		long[] sorted = Arrays.copyOf(latencies, count);
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	/**
+	 * @param sorted 排序后的耗时(纳秒)
+	 * @param percentile 0~100
+	 * @return 毫秒
+	 */
+	public static double percentileMillis(long[] sorted, double percentile) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+		return sorted[Math.min(Math.max(rank, 1), sorted.length) - 1] / 1e6;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public int getErrors() {
+		return errors;
+	}
+
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	public long getDropped() {
+		return dropped;
+	}
+
+	public String getFirstError() {
+		return firstError;
+	}
+
+}
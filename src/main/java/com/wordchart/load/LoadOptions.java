@@ -0,0 +1,204 @@
+package com.wordchart.load;
+
+/**
+ * 压测参数
+ */
+public class LoadOptions {
+
+	public static final String LOOP_CLOSED = "closed";
+	public static final String LOOP_OPEN = "open";
+
+	public static final String RENDERER_XWPF = "xwpf";
+	public static final String RENDERER_FAST = "fast";
+
+	// 开环模式的发起间隔不能小于1纳秒
+	public static final double MAX_RATE = 1e9;
+
+	// 模板路径,为空时使用内置模板
+	private String template;
+
+	private int series = 3;
+
+	private int points = 12;
+
+	// 填充数据的图表数量,超出模板中的图表数时以模板为准
+	private int charts = Integer.MAX_VALUE;
+
+	// 横坐标、系列名的字符数
+	private int payload = 8;
+
+	// 每个图表区块{{?tag}}的图表数
+	private int items = 3;
+
+	private int concurrency = Runtime.getRuntime().availableProcessors();
+
+	// 秒
+	private int duration = 30;
+
+	// 秒
+	private int warmup = 10;
+
+	private String loop = LOOP_CLOSED;
+
+	// 开环模式下每秒发起的渲染数
+	private double rate;
+
+	private String renderer = RENDERER_XWPF;
+
+	// JSON结果输出文件,为空时输出到控制台
+	private String json;
+
+	public static LoadOptions parse(String[] args) {
+		LoadOptions options = new LoadOptions();
+		for (int i = 0; i < args.length; i++) {
+			String name = args[i];
+			if (!name.startsWith("--") || i + 1 >= args.length) {
+				throw new IllegalArgumentException("Invalid argument: " + name);
+			}
+			String value = args[++i];
+			switch (name.substring(2)) {
+			case "template":
+				options.template = value;
+				break;
+			case "series":
+				options.series = positive(name, value);
+				break;
+			case "points":
+				options.points = positive(name, value);
+				break;
+			case "charts":
+				options.charts = positive(name, value);
+				break;
+			case "payload":
+				options.payload = nonNegative(name, value);
+				break;
+			case "items":
+				options.items = nonNegative(name, value);
+				break;
+			case "concurrency":
+				options.concurrency = positive(name, value);
+				break;
+			case "duration":
+				options.duration = positive(name, value);
+				break;
+			case "warmup":
+				options.warmup = nonNegative(name, value);
+				break;
+			case "loop":
+				options.loop = oneOf(name, value, LOOP_CLOSED, LOOP_OPEN);
+				break;
+			case "rate":
+				options.rate = rate(name, value);
+				break;
+			case "renderer":
+				options.renderer = oneOf(name, value, RENDERER_XWPF, RENDERER_FAST);
+				break;
+			case "json":
+				options.json = value;
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown argument: " + name);
+			}
+		}
+		if (LOOP_OPEN.equals(options.loop) && options.rate <= 0) {
+			throw new IllegalArgumentException("--rate is required for the open loop");
+		}
+		return options;
+	}
+
+	public static String usage() {
+		return "Usage: App [--template <docx>] [--series 3] [--points 12] [--charts <all>] [--payload 8] [--items 3]\n"
+				+ "           [--concurrency <cpus>] [--duration 30] [--warmup 10]\n"
+				+ "           [--loop closed|open] [--rate <docs/s>] [--renderer xwpf|fast] [--json <file>]";
+	}
+
+	private static int positive(String name, String value) {
+		int number = Integer.parseInt(value);
+		if (number <= 0) {
+			throw new IllegalArgumentException(name + " must be positive: " + value);
+		}
+		return number;
+	}
+
+	private static int nonNegative(String name, String value) {
+		int number = Integer.parseInt(value);
+		if (number < 0) {
+			throw new IllegalArgumentException(name + " must not be negative: " + value);
+		}
+		return number;
+	}
+
+	private static double rate(String name, String value) {
+		double rate = Double.parseDouble(value);
+		// 同时排除NaN
+		if (!(rate > 0 && rate <= MAX_RATE)) {
+			throw new IllegalArgumentException(name + " must be in (0, " + (long) MAX_RATE + "]: " + value);
+		}
+		return rate;
+	}
+
+	/**
+	 * @return value为candidates之一时原样返回,否则抛出IllegalArgumentException
+	 */
+	public static String oneOf(String name, String value, String... candidates) {
+		for (String candidate : candidates) {
+			if (candidate.equals(value)) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Invalid " + name + ": " + value);
+	}
+
+	public String getTemplate() {
+		return template;
+	}
+
+	public int getSeries() {
+		return series;
+	}
+
+	public int getPoints() {
+		return points;
+	}
+
+	public int getCharts() {
+		return charts;
+	}
+
+	public int getPayload() {
+		return payload;
+	}
+
+	public int getItems() {
+		return items;
+	}
+
+	public int getConcurrency() {
+		return concurrency;
+	}
+
+	public int getDuration() {
+		return duration;
+	}
+
+	public int getWarmup() {
+		return warmup;
+	}
+
+	public String getLoop() {
+		return loop;
+	}
+
+	public double getRate() {
+		return rate;
+	}
+
+	public String getRenderer() {
+		return renderer;
+	}
+
+	public String getJson() {
+		return json;
+	}
+
+}
@@ -0,0 +1,121 @@
+package com.wordchart.load;
+
+import com.alibaba.fastjson.JSONObject;
+
+/**
+ * 压测结果,可输出为文本或JSON,便于不同版本之间比较
+ */
+public class LoadReport {
+
+	private final LoadOptions options;
+
+	private final int docs;
+
+	private final int errors;
+
+	// 开环模式超时后丢弃的渲染,不计入耗时统计
+	private final long dropped;
+
+	private final String firstError;
+
+	private final long elapsedNanos;
+
+	private final long[] latencies;
+
+	private final long allocatedBytes;
+
+	private final int gcPauses;
+
+	private final long gcTotalMillis;
+
+	private final long gcMaxMillis;
+
+	public LoadReport(LoadOptions options, LatencyRecorder recorder, long elapsedNanos, GcMonitor gcMonitor) {
+		this.options = options;
+		this.docs = recorder.getCount();
+		this.errors = recorder.getErrors();
+		this.dropped = recorder.getDropped();
+		this.firstError = recorder.getFirstError();
+		this.elapsedNanos = elapsedNanos;
+		this.latencies = recorder.sortedLatencies();
+		this.allocatedBytes = recorder.getAllocatedBytes();
+		this.gcPauses = gcMonitor.getPauses();
+		this.gcTotalMillis = gcMonitor.getTotalMillis();
+		this.gcMaxMillis = gcMonitor.getMaxMillis();
+	}
+
+	/**
+	 * @return 发起的渲染数,含失败与丢弃的渲染
+	 */
+	public long getDispatched() {
+		return docs + errors + dropped;
+	}
+
+	public double getThroughput() {
+		return elapsedNanos <= 0 ? 0 : docs * 1e9 / elapsedNanos;
+	}
+
+	/**
+	 * @param percentile 0~100
+	 * @return 毫秒
+	 */
+	public double getLatencyMillis(double percentile) {
+		return LatencyRecorder.percentileMillis(latencies, percentile);
+	}
+
+	public long getAllocatedBytesPerDoc() {
+		return docs == 0 ? 0 : allocatedBytes / docs;
+	}
+
+	public String toText() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("renderer=%s loop=%s concurrency=%d duration=%ds warmup=%ds%n", options.getRenderer(),
+				options.getLoop(), options.getConcurrency(), options.getDuration(), options.getWarmup()));
+		sb.append(String.format("data: series=%d points=%d payload=%d items=%d%n", options.getSeries(),
+				options.getPoints(), options.getPayload(), options.getItems()));
+		sb.append(String.format("dispatched=%d docs=%d errors=%d dropped=%d throughput=%.1f docs/s%n",
+				getDispatched(), docs, errors, dropped, getThroughput()));
+		sb.append(String.format("latency ms: p50=%.2f p95=%.2f p99=%.2f max=%.2f%n", getLatencyMillis(50),
+				getLatencyMillis(95), getLatencyMillis(99), getLatencyMillis(100)));
+		sb.append(String.format("gc pauses: count=%d total=%dms max=%dms%n", gcPauses, gcTotalMillis, gcMaxMillis));
+		sb.append(String.format("allocation: %d KB/doc", getAllocatedBytesPerDoc() / 1024));
+		if (firstError != null) {
+			sb.append(String.format("%nfirst error: %s", firstError));
+		}
+		return sb.toString();
+	}
+
+	public String toJson() {
+		JSONObject json = new JSONObject(true);
+		json.put("renderer", options.getRenderer());
+		json.put("loop", options.getLoop());
+		json.put("rate", options.getRate());
+		json.put("concurrency", options.getConcurrency());
+		json.put("durationSeconds", options.getDuration());
+		json.put("warmupSeconds", options.getWarmup());
+		json.put("template", options.getTemplate());
+		json.put("series", options.getSeries());
+		json.put("points", options.getPoints());
+		json.put("payload", options.getPayload());
+		json.put("items", options.getItems());
+		json.put("dispatched", getDispatched());
+		json.put("docs", docs);
+		json.put("errors", errors);
+		json.put("dropped", dropped);
+		json.put("throughput", getThroughput());
+		JSONObject latency = new JSONObject(true);
+		latency.put("p50", getLatencyMillis(50));
+		latency.put("p95", getLatencyMillis(95));
+		latency.put("p99", getLatencyMillis(99));
+		latency.put("max", getLatencyMillis(100));
+		json.put("latencyMillis", latency);
+		JSONObject gc = new JSONObject(true);
+		gc.put("pauses", gcPauses);
+		gc.put("totalMillis", gcTotalMillis);
+		gc.put("maxMillis", gcMaxMillis);
+		json.put("gc", gc);
+		json.put("allocatedBytesPerDoc", getAllocatedBytesPerDoc());
+		return json.toJSONString();
+	}
+
+}
@@ -0,0 +1,185 @@
+package com.wordchart.load;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.wordchart.render.DocumentRenderer;
+
+/**
+ * 压测执行器,支持两种模式:
+ * <ul>
+ * <li>闭环(closed):每个线程渲染完一份立即渲染下一份,耗时为单次渲染时间</li>
+ * <li>开环(open):按固定速率发起渲染,耗时从计划发起时刻算起,包含排队时间</li>
+ * </ul>
+ */
+public class LoadRunner {
+
+	private static Logger logger = LoggerFactory.getLogger(LoadRunner.class);
+
+	private final LoadOptions options;
+
+	private final DocumentRenderer renderer;
+
+	// 预先生成的数据,轮流使用
+	private final List<?> models;
+
+	public LoadRunner(LoadOptions options, DocumentRenderer renderer, List<?> models) {
+		this.options = options;
+		this.renderer = renderer;
+		this.models = models;
+	}
+
+	public LoadReport run() throws InterruptedException {
+		if (options.getWarmup() > 0) {
+			logger.info("Warmup {}s...", options.getWarmup());
+			runPhase(TimeUnit.SECONDS.toNanos(options.getWarmup()));
+		}
+		logger.info("Measure {}s...", options.getDuration());
+		GcMonitor gcMonitor = new GcMonitor();
+		gcMonitor.start();
+		long start = System.nanoTime();
+		LatencyRecorder recorder;
+		try {
+			recorder = runPhase(TimeUnit.SECONDS.toNanos(options.getDuration()));
+		} finally {
+			gcMonitor.stop();
+		}
+		return new LoadReport(options, recorder, System.nanoTime() - start, gcMonitor);
+	}
+
+	private LatencyRecorder runPhase(long nanos) throws InterruptedException {
+		if (LoadOptions.LOOP_OPEN.equals(options.getLoop())) {
+			return runOpenLoop(nanos);
+		}
+		return runClosedLoop(nanos);
+	}
+
+	private LatencyRecorder runClosedLoop(long nanos) throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(options.getConcurrency());
+		final long deadline = System.nanoTime() + nanos;
+		List<Future<LatencyRecorder>> futures = new ArrayList<Future<LatencyRecorder>>();
+		for (int worker = 0; worker < options.getConcurrency(); worker++) {
+			final int offset = worker;
+			futures.add(pool.submit(new Callable<LatencyRecorder>() {
+				@Override
+				public LatencyRecorder call() {
+					LatencyRecorder recorder = new LatencyRecorder();
+					for (int i = offset; System.nanoTime() < deadline; i++) {
+						renderOnce(models.get(i % models.size()), System.nanoTime(), recorder, null);
+					}
+					return recorder;
+				}
+			}));
+		}
+		pool.shutdown();
+		LatencyRecorder recorder = new LatencyRecorder();
+		for (Future<LatencyRecorder> future : futures) {
+			try {
+				recorder.merge(future.get());
+			} catch (ExecutionException e) {
+				recorder.error(e.getCause());
+			}
+		}
+		return recorder;
+	}
+
+	private LatencyRecorder runOpenLoop(long nanos) throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(options.getConcurrency());
+		final Queue<LatencyRecorder> recorders = new ConcurrentLinkedQueue<LatencyRecorder>();
+		final ThreadLocal<LatencyRecorder> localRecorder = ThreadLocal.withInitial(() -> {
+			LatencyRecorder recorder = new LatencyRecorder();
+			recorders.add(recorder);
+			return recorder;
+		});
+		// 置为true后完成的渲染不再记录
+		final AtomicBoolean closed = new AtomicBoolean();
+		// LoadOptions保证rate不超过MAX_RATE,间隔至少1纳秒
+		long interval = (long) (TimeUnit.SECONDS.toNanos(1) / options.getRate());
+		long start = System.nanoTime();
+		AtomicLong dispatched = new AtomicLong();
+		for (long i = 0;; i++) {
+			final long intended = start + i * interval;
+			if (intended - start >= nanos) {
+				break;
+			}
+			long wait = intended - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(wait);
+			}
+			final Object model = models.get((int) (i % models.size()));
+			pool.execute(() -> renderOnce(model, intended, localRecorder.get(), closed));
+			dispatched.incrementAndGet();
+		}
+		pool.shutdown();
+		// 积压的渲染最多再等待一个压测时长
+		boolean drained = pool.awaitTermination(nanos, TimeUnit.NANOSECONDS);
+		closed.set(true);
+		if (!drained) {
+			int queued = pool.shutdownNow().size();
+			logger.warn("Open loop backlog not drained, {} of {} renders still queued", queued, dispatched.get());
+			// 正在执行的渲染无法中断,等待其结束再进入下一阶段,结果不再记录
+			while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+				logger.warn("Waiting for running renders to finish");
+			}
+		}
+		LatencyRecorder recorder = new LatencyRecorder();
+		for (LatencyRecorder threadRecorder : recorders) {
+			recorder.merge(threadRecorder);
+		}
+		// 超时后未记录的渲染通常是最慢的,单独报告
+		recorder.drop(dispatched.get() - recorder.getCount() - recorder.getErrors());
+		return recorder;
+	}
+
+	/**
+	 * @param closed 不为null且为true时丢弃本次结果
+	 */
+	private void renderOnce(Object model, long intendedStart, LatencyRecorder recorder, AtomicBoolean closed) {
+		long allocated = allocatedBytes();
+		Exception error = null;
+		long latency = 0;
+		try {
+			renderer.render(model);
+			latency = System.nanoTime() - intendedStart;
+			allocated = allocatedBytes() - allocated;
+		} catch (Exception e) {
+			error = e;
+		}
+		if (closed != null && closed.get()) {
+			return;
+		}
+		if (error == null) {
+			recorder.record(latency, allocated);
+		} else {
+			recorder.error(error);
+		}
+	}
+
+	/**
+	 * @return 当前线程累计分配的字节数,JVM不支持时返回0
+	 */
+	public static long allocatedBytes() {
+		java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if (threadBean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threadBean)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+
+}
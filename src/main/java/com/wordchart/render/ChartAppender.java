@@ -0,0 +1,258 @@
+package com.wordchart.render;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xwpf.usermodel.XWPFChart;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.openxmlformats.schemas.drawingml.x2006.chart.CTBarChart;
+import org.openxmlformats.schemas.drawingml.x2006.chart.CTBarSer;
+import org.openxmlformats.schemas.drawingml.x2006.chart.CTNumData;
+import org.openxmlformats.schemas.drawingml.x2006.chart.CTNumVal;
+import org.openxmlformats.schemas.drawingml.x2006.chart.CTStrData;
+import org.openxmlformats.schemas.drawingml.x2006.chart.CTStrVal;
+
+import com.alibaba.fastjson.JSONArray;
+import com.deepoove.poi.exception.RenderException;
+import com.deepoove.poi.resolver.TemplateResolver;
+
+/**
+ * 对MyChartPolicy渲染过的图表做增量追加:只写入新增的行,并按滚动窗口丢弃最早的行。
+ * <p>
+ * 不会重建sheet与点缓存:新行追加在sheet末尾,过期行直接删除,系列区域随之后移;
+ * 点缓存只删除过期点、追加新点,再更新ptCount与区域公式。行号接近sheet上限时才整体上移一次。
+ * 点缓存以ptCount为点数,允许省略空值点(如EXCEL另存后的缓存)。
+ * 一次追加的行数超过窗口时,只写入最后window行。
+ * </p>
+ * <p>
+ * sheet的改动与新增行数成正比;点缓存的idx须从0开始,有点过期时剩余点都要重新编号,
+ * 窗口填满后每次追加的开销与窗口大小成正比。
+ * </p>
+ * 新行格式与MyChartPolicy的数据行一致(不含首行系列名):
+ *
+ * <pre>
+ * 七月 700 350
+ * 八月 800 400
+ * </pre>
+ */
+public class ChartAppender {
+
+	private static final int MAX_ROW_INDEX = SpreadsheetVersion.EXCEL2007.getLastRowIndex();
+
+	private static final QName PT = new QName(ChartPartWriter.CHART_NS, "pt");
+
+	private static final QName IDX = new QName("idx");
+
+	private final XWPFChart chart;
+
+	public ChartAppender(XWPFChart chart) {
+		this.chart = chart;
+	}
+
+	/**
+	 * 对已渲染的文档追加数据,包括页眉、页脚中的图表
+	 *
+	 * @param in
+	 * @param out
+	 * @param rowsByChart key为图表的part名,如/word/charts/chart1.xml,参考ChartTemplates.chartPartNames
+	 * @param window      滚动窗口大小,小于等于0表示不丢弃
+	 * @throws IOException
+	 */
+	public static void append(InputStream in, OutputStream out, Map<String, JSONArray> rowsByChart, int window)
+			throws IOException {
+		try (XWPFDocument doc = new XWPFDocument(in)) {
+			List<XWPFChart> charts = new ArrayList<XWPFChart>(doc.getCharts());
+			charts.addAll(TemplateResolver.headerFooterCharts(doc));
+			for (XWPFChart chart : charts) {
+				JSONArray rows = rowsByChart.get(chart.getPackagePart().getPartName().getName());
+				if (rows != null) {
+					new ChartAppender(chart).append(rows, window);
+				}
+			}
+			doc.write(out);
+		}
+	}
+
+	/**
+	 * 追加新行
+	 *
+	 * @param rows   新增的数据行
+	 * @param window 滚动窗口大小,小于等于0表示不丢弃
+	 */
+	public void append(JSONArray rows, int window) {
+		if (rows == null || rows.isEmpty()) {
+			return;
+		}
+		CTBarChart ctBarChart = chart.getCTChart().getPlotArea().getBarChartArray(0);
+		int serCount = ctBarChart.sizeOfSerArray();
+		if (serCount == 0) {
+			return;
+		}
+		// 超出窗口的新行追加后也会立即过期
+		if (window > 0 && rows.size() > window) {
+			rows = new JSONArray(rows.subList(rows.size() - window, rows.size()));
+		}
+		CTBarSer firstSer = ctBarChart.getSerArray(0);
+		CTStrData firstStrData = strCache(firstSer);
+		// 现有数据区域
+		String formula = firstSer.getCat().getStrRef().getF();
+		int firstRow = new CellReference(formula.substring(formula.lastIndexOf('!') + 1).split(":")[0]).getRow();
+		int count = firstStrData.isSetPtCount() ? (int) firstStrData.getPtCount().getVal()
+				: firstStrData.sizeOfPtArray();
+		int newCount = count + rows.size();
+		int drop = window > 0 ? Math.max(0, Math.min(count, newCount - window)) : 0;
+
+		XSSFWorkbook workbook;
+		try {
+			workbook = chart.getWorkbook();
+		} catch (IOException | InvalidFormatException e) {
+			throw new RenderException("Unable to open the workbook of chart", e);
+		}
+		String sheetName = workbook.getSheetName(0);
+		Sheet sheet = workbook.getSheetAt(0);
+		firstRow = refreshSheet(sheet, rows, firstRow, count, drop);
+		int lastRow = firstRow + newCount - drop - 1;
+
+		for (int serIndex = 0; serIndex < serCount; serIndex++) {
+			CTBarSer ctBarSer = ctBarChart.getSerArray(serIndex);
+			refreshStrCache(strCache(ctBarSer), rows, drop);
+			refreshNumCache(numCache(ctBarSer), rows, serIndex + 1, drop);
+
+			// 序列区域
+			ctBarSer.getCat().getStrRef()
+					.setF(new CellRangeAddress(firstRow, lastRow, 0, 0).formatAsString(sheetName, true));
+			// 数据区域
+			ctBarSer.getVal().getNumRef().setF(
+					new CellRangeAddress(firstRow, lastRow, serIndex + 1, serIndex + 1).formatAsString(sheetName, true));
+		}
+	}
+
+	/**
+	 * 删除过期行、在末尾追加新行
+	 *
+	 * @return 新的首个数据行
+	 */
+	private int refreshSheet(Sheet sheet, JSONArray rows, int firstRow, int count, int drop) {
+		for (int i = 0; i < drop; i++) {
+			Row row = sheet.getRow(firstRow + i);
+			if (row != null) {
+				sheet.removeRow(row);
+			}
+		}
+		firstRow += drop;
+		int remaining = count - drop;
+		// 行号将超出sheet上限时,把剩余数据上移到首行系列名之后
+		if (firstRow + remaining + rows.size() - 1 > MAX_ROW_INDEX) {
+			if (remaining > 0) {
+				sheet.shiftRows(firstRow, firstRow + remaining - 1, 1 - firstRow);
+			}
+			firstRow = 1;
+		}
+		int rowIndex = firstRow + remaining;
+		for (int i = 0; i < rows.size(); i++) {
+			JSONArray cols = rows.getJSONArray(i);
+			Row row = sheet.createRow(rowIndex++);
+			for (int colIndex = 0; cols != null && colIndex < cols.size(); colIndex++) {
+				// 首列代表横坐标,其余为数值,参考MyChartPolicy.createCells
+				String cellValueStr = cols.getString(colIndex);
+				if (colIndex == 0 || !NumberUtils.isNumber(cellValueStr)) {
+					row.createCell(colIndex).setCellValue(cellValueStr);
+				} else {
+					row.createCell(colIndex).setCellValue(cols.getDoubleValue(colIndex));
+				}
+			}
+		}
+		return firstRow;
+	}
+
+	private void refreshStrCache(CTStrData strData, JSONArray rows, int drop) {
+		int count = strData.isSetPtCount() ? (int) strData.getPtCount().getVal() : strData.sizeOfPtArray();
+		dropPoints(strData, drop);
+		int idx = count - drop;
+		for (int i = 0; i < rows.size(); i++) {
+			JSONArray cols = rows.getJSONArray(i);
+			CTStrVal sVal = strData.addNewPt();
+			sVal.setIdx(idx++);
+			sVal.setV(cols != null && cols.size() > 0 ? cols.getString(0) : null);
+		}
+		(strData.isSetPtCount() ? strData.getPtCount() : strData.addNewPtCount()).setVal(idx);
+	}
+
+	private void refreshNumCache(CTNumData numData, JSONArray rows, int colIndex, int drop) {
+		int count = numData.isSetPtCount() ? (int) numData.getPtCount().getVal() : numData.sizeOfPtArray();
+		dropPoints(numData, drop);
+		int idx = count - drop;
+		for (int i = 0; i < rows.size(); i++) {
+			JSONArray cols = rows.getJSONArray(i);
+			CTNumVal numVal = numData.addNewPt();
+			numVal.setIdx(idx++);
+			numVal.setV(cols != null && cols.size() > colIndex ? cols.getString(colIndex) : null);
+		}
+		(numData.isSetPtCount() ? numData.getPtCount() : numData.addNewPtCount()).setVal(idx);
+	}
+
+	/**
+	 * 删除idx小于drop的点,其余点的idx减去drop,省略的空值点仍然省略。
+	 * 用游标顺序遍历,getPtArray(int)每次都从头查找
+	 */
+	private static void dropPoints(XmlObject cache, int drop) {
+		if (drop <= 0) {
+			return;
+		}
+		XmlCursor cursor = cache.newCursor();
+		try {
+			// 点按idx升序排列,过期点都在最前面;删除后回到缓存元素
+			cursor.push();
+			while (cursor.toChild(PT) && idx(cursor) < drop) {
+				cursor.removeXml();
+				cursor.pop();
+				cursor.push();
+			}
+			cursor.pop();
+			if (cursor.toChild(PT)) {
+				do {
+					cursor.setAttributeText(IDX, String.valueOf(idx(cursor) - drop));
+				} while (cursor.toNextSibling(PT));
+			}
+		} finally {
+			cursor.dispose();
+		}
+	}
+
+	private static int idx(XmlCursor cursor) {
+		return Integer.parseInt(cursor.getAttributeText(IDX));
+	}
+
+	private static CTStrData strCache(CTBarSer ctBarSer) {
+		if (ctBarSer.getCat() == null || ctBarSer.getCat().getStrRef() == null
+				|| ctBarSer.getCat().getStrRef().getStrCache() == null) {
+			throw new RenderException("Chart series has no category string cache, render it with MyChartPolicy first");
+		}
+		return ctBarSer.getCat().getStrRef().getStrCache();
+	}
+
+	private static CTNumData numCache(CTBarSer ctBarSer) {
+		if (ctBarSer.getVal() == null || ctBarSer.getVal().getNumRef() == null
+				|| ctBarSer.getVal().getNumRef().getNumCache() == null) {
+			throw new RenderException("Chart series has no value number cache, render it with MyChartPolicy first");
+		}
+		return ctBarSer.getVal().getNumRef().getNumCache();
+	}
+
+}
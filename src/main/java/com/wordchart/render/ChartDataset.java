@@ -0,0 +1,147 @@
+package com.wordchart.render;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.events.Characters;
+
+import com.alibaba.fastjson.JSONArray;
+
+/**
+ * 编码后的图表数据,格式同MyChartPolicy:首行为系列名,首列为横坐标,其余为数值。
+ * 首行与首列的标签只保存id,数值保持原字符串
+ * <p>
+ * id非负时取自LabelDictionary,为负时取自本数据集的labels(未指定字典或字典已满)
+ * </p>
+ */
+final class ChartDataset {
+
+	// 单元格为null
+	static final int NULL_ID = Integer.MIN_VALUE;
+
+	private final LabelDictionary dictionary;
+
+	private final List<LabelDictionary.Label> labels = new ArrayList<LabelDictionary.Label>();
+
+	// 首行,含首个单元格;rows为空时为null
+	private int[] header;
+
+	// 第一行开始每行的首列
+	private int[] axisIds;
+
+	// 第一行开始每行除首列外的单元格,行为null时为null
+	private String[][] values;
+
+	// 每行的单元格数,与原数据一致
+	private int[] widths;
+
+	private ChartDataset(LabelDictionary dictionary) {
+		this.dictionary = dictionary;
+	}
+
+	/**
+	 * @param rows
+	 * @param dictionary 可为null
+	 * @return
+	 */
+	static ChartDataset encode(JSONArray rows, LabelDictionary dictionary) {
+		ChartDataset dataset = new ChartDataset(dictionary);
+		int size = rows == null ? 0 : rows.size();
+		dataset.widths = new int[size];
+		dataset.axisIds = new int[Math.max(0, size - 1)];
+		dataset.values = new String[Math.max(0, size - 1)][];
+		for (int rowIndex = 0; rowIndex < size; rowIndex++) {
+			JSONArray cols = rows.getJSONArray(rowIndex);
+			int width = cols == null ? 0 : cols.size();
+			dataset.widths[rowIndex] = width;
+			if (rowIndex == 0) {
+				dataset.header = new int[width];
+				for (int colIndex = 0; colIndex < width; colIndex++) {
+					dataset.header[colIndex] = dataset.intern(cols.getString(colIndex));
+				}
+				continue;
+			}
+			dataset.axisIds[rowIndex - 1] = width > 0 ? dataset.intern(cols.getString(0)) : NULL_ID;
+			if (cols != null) {
+				String[] rowValues = new String[Math.max(0, width - 1)];
+				for (int colIndex = 1; colIndex < width; colIndex++) {
+					rowValues[colIndex - 1] = cols.getString(colIndex);
+				}
+				dataset.values[rowIndex - 1] = rowValues;
+			}
+		}
+		return dataset;
+	}
+
+	private int intern(String text) {
+		if (text == null) {
+			return NULL_ID;
+		}
+		int id = dictionary == null ? -1 : dictionary.intern(text);
+		if (id >= 0) {
+			return id;
+		}
+		labels.add(new LabelDictionary.Label(text));
+		return -labels.size();
+	}
+
+	private LabelDictionary.Label label(int id) {
+		return id >= 0 ? dictionary.label(id) : labels.get(-id - 1);
+	}
+
+	/**
+	 * @return 行数,含首行
+	 */
+	int rowCount() {
+		return widths.length;
+	}
+
+	int width(int rowIndex) {
+		return widths[rowIndex];
+	}
+
+	/**
+	 * 系列数,参考MyChartPolicy.resolveDatas:首行不足两个单元格时没有系列
+	 */
+	int seriesCount() {
+		return header == null ? 0 : Math.max(0, header.length - 1);
+	}
+
+	/**
+	 * 数据行数,不含首行
+	 */
+	int axisCount() {
+		return seriesCount() == 0 ? 0 : axisIds.length;
+	}
+
+	int headerId(int colIndex) {
+		return header[colIndex];
+	}
+
+	int seriesId(int serIndex) {
+		return header[serIndex + 1];
+	}
+
+	int axisId(int axisIndex) {
+		return axisIds[axisIndex];
+	}
+
+	/**
+	 * @param axisIndex 数据行,不含首行
+	 * @param colIndex  从1开始
+	 * @return
+	 */
+	String value(int axisIndex, int colIndex) {
+		String[] rowValues = values[axisIndex];
+		return rowValues == null || colIndex > rowValues.length ? null : rowValues[colIndex - 1];
+	}
+
+	Characters characters(int id) {
+		return label(id).characters;
+	}
+
+	boolean preserveSpace(int id) {
+		return label(id).preserveSpace;
+	}
+
+}
@@ -0,0 +1,417 @@
+package com.wordchart.render;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+import org.apache.poi.ooxml.POIXMLDocument;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackageRelationship;
+import org.apache.poi.openxml4j.opc.PackagingURIHelper;
+import org.apache.poi.util.IOUtils;
+import org.apache.poi.xssf.model.CalculationChain;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xwpf.usermodel.XWPFChart;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.fastjson.JSONArray;
+import com.deepoove.poi.XWPFTemplate;
+import com.deepoove.poi.config.Configure;
+import com.deepoove.poi.exception.RenderException;
+import com.deepoove.poi.exception.ResolverException;
+import com.deepoove.poi.policy.MyChartPolicy;
+import com.deepoove.poi.policy.RenderPolicy;
+import com.deepoove.poi.render.compute.RenderDataCompute;
+import com.deepoove.poi.template.MetaTemplate;
+import com.deepoove.poi.template.run.MyRunTemplate;
+
+/**
+ * 图表快速渲染:模板中只有图表标签时,不再构造XWPFDocument,直接流式复制模板zip,
+ * 只改写图表xml及其内嵌EXCEL的sheet xml
+ *
+ * <pre>
+ * ChartPartRenderer renderer = ChartPartRenderer.compile(path, config);
+ * renderer.render(params, out);
+ * </pre>
+ */
+public class ChartPartRenderer {
+
+	private static Logger logger = LoggerFactory.getLogger(ChartPartRenderer.class);
+
+	private static final String CONTENT_TYPES_ENTRY = "[Content_Types].xml";
+
+	// null数据只删除图表中的系列
+	private static final ChartDataset EMPTY_DATASET = ChartDataset.encode(null, null);
+
+	private final byte[] templateBytes;
+
+	private final Configure config;
+
+	// key为图表在zip中的entry名
+	private final Map<String, ChartPart> chartParts;
+
+	// key为内嵌EXCEL在zip中的entry名
+	private final Map<String, ChartPart> workbookParts;
+
+	// 默认不使用,标签很少时对分配与GC几乎没有影响,见LabelDictionaryBenchmark
+	private LabelDictionary labelDictionary;
+
+	// 校验模式下每次渲染都会与MyChartPolicy的结果比对
+	private boolean verifyMode;
+
+	private ChartPartRenderer(byte[] templateBytes, Configure config, Map<String, ChartPart> chartParts) {
+		this.templateBytes = templateBytes;
+		this.config = config;
+		this.chartParts = chartParts;
+		this.workbookParts = new HashMap<String, ChartPart>();
+		for (ChartPart chartPart : chartParts.values()) {
+			this.workbookParts.put(chartPart.workbookEntry, chartPart);
+		}
+	}
+
+	public static ChartPartRenderer compile(String path, Configure config) throws IOException {
+		try (InputStream in = new FileInputStream(path)) {
+			return compile(in, config);
+		}
+	}
+
+	/**
+	 * 预编译模板:借助TemplateResolver.resolveCharts找出所有图表标签,记录图表及内嵌EXCEL的位置
+	 *
+	 * @param in
+	 * @param config
+	 * @return
+	 * @throws IOException
+	 */
+	public static ChartPartRenderer compile(InputStream in, Configure config) throws IOException {
+		byte[] templateBytes = IOUtils.toByteArray(in);
+		Map<String, ChartPart> chartParts = new LinkedHashMap<String, ChartPart>();
+		try (XWPFTemplate template = XWPFTemplate.compile(new ByteArrayInputStream(templateBytes), config)) {
+			for (MetaTemplate metaTemplate : template.getElementTemplates()) {
+				if (!(metaTemplate instanceof MyRunTemplate) || ((MyRunTemplate) metaTemplate).getChart() == null) {
+					throw new ResolverException("Template tag " + metaTemplate + " is not a chart tag");
+				}
+				MyRunTemplate myRunTemplate = (MyRunTemplate) metaTemplate;
+				RenderPolicy policy = config.getPolicy(myRunTemplate.getTagName(), myRunTemplate.getSign());
+				if (!(policy instanceof MyChartPolicy)) {
+					throw new ResolverException("Chart tag " + myRunTemplate + " is not bound to MyChartPolicy");
+				}
+				ChartPart chartPart = resolveChartPart(myRunTemplate);
+				chartParts.put(chartPart.chartEntry, chartPart);
+			}
+		}
+		logger.info("Compile chart part template, {} charts.", chartParts.size());
+		return new ChartPartRenderer(templateBytes, config, chartParts);
+	}
+
+	private static ChartPart resolveChartPart(MyRunTemplate myRunTemplate) throws IOException {
+		XWPFChart chart = myRunTemplate.getChart();
+		PackagePart chartPackagePart = chart.getPackagePart();
+		PackagePart workbookPackagePart = null;
+		XSSFWorkbook workbook = null;
+		try {
+			for (PackageRelationship relationship : chartPackagePart
+					.getRelationshipsByType(POIXMLDocument.PACK_OBJECT_REL_TYPE)) {
+				workbookPackagePart = chartPackagePart.getRelatedPart(relationship);
+				break;
+			}
+			workbook = chart.getWorkbook();
+		} catch (InvalidFormatException e) {
+			throw new ResolverException("Unable to resolve the workbook of chart " + myRunTemplate, e);
+		}
+		if (workbookPackagePart == null) {
+			throw new ResolverException("Chart " + myRunTemplate + " has no embedded workbook");
+		}
+		ChartPart chartPart = new ChartPart();
+		chartPart.tagName = myRunTemplate.getTagName();
+		chartPart.source = myRunTemplate.getSource();
+		chartPart.chartEntry = entryName(chartPackagePart);
+		chartPart.workbookEntry = entryName(workbookPackagePart);
+		resolveWorkbook(chartPart, workbook);
+		return chartPart;
+	}
+
+	/**
+	 * 记录内嵌EXCEL中sheet、计算链等entry的位置
+	 *
+	 * @param chartPart
+	 * @param workbook
+	 */
+	static void resolveWorkbook(ChartPart chartPart, XSSFWorkbook workbook) {
+		chartPart.sheetName = workbook.getSheetName(0);
+		chartPart.sheetEntry = entryName(workbook.getSheetAt(0).getPackagePart());
+		CalculationChain calcChain = workbook.getCalculationChain();
+		if (calcChain != null) {
+			chartPart.calcChainEntry = entryName(calcChain.getPackagePart());
+			chartPart.workbookRelsEntry = PackagingURIHelper
+					.getRelationshipPartName(workbook.getPackagePart().getPartName()).getName().substring(1);
+		}
+	}
+
+	static String entryName(PackagePart part) {
+		return part.getPartName().getURI().getPath().substring(1);
+	}
+
+	public boolean isVerifyMode() {
+		return verifyMode;
+	}
+
+	public void setVerifyMode(boolean verifyMode) {
+		this.verifyMode = verifyMode;
+	}
+
+	public LabelDictionary getLabelDictionary() {
+		return labelDictionary;
+	}
+
+	/**
+	 * @param labelDictionary 为null(默认)时不使用字典,每份文档单独编码标签;字典不会淘汰标签,
+	 *                        只适合横坐标、系列名固定的模板
+	 */
+	public void setLabelDictionary(LabelDictionary labelDictionary) {
+		this.labelDictionary = labelDictionary;
+	}
+
+	public Configure getConfig() {
+		return config;
+	}
+
+	/**
+	 * @return 模板中的图表标签名
+	 */
+	public List<String> getTagNames() {
+		List<String> tagNames = new ArrayList<String>();
+		for (ChartPart chartPart : chartParts.values()) {
+			tagNames.add(chartPart.tagName);
+		}
+		return tagNames;
+	}
+
+	public byte[] render(Object model) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(templateBytes.length + 4096);
+		render(model, out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * 渲染并写入输出流,输出流不会被关闭
+	 *
+	 * @param model
+	 * @param out
+	 * @throws IOException
+	 */
+	public void render(Object model, OutputStream out) throws IOException {
+		if (verifyMode) {
+			byte[] actual = doRender(model);
+			List<String> differences = ChartPartVerifier.compare(renderByPolicy(model), actual, chartParts.values());
+			if (!differences.isEmpty()) {
+				throw new RenderException("Chart part output differs from MyChartPolicy: " + differences);
+			}
+			out.write(actual);
+			return;
+		}
+		doRender(model, out);
+	}
+
+	byte[] doRender(Object model) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(templateBytes.length + 4096);
+		doRender(model, out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * 常规渲染流程的结果,用于校验
+	 */
+	byte[] renderByPolicy(Object model) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(templateBytes.length + 4096);
+		try (XWPFTemplate template = XWPFTemplate.compile(new ByteArrayInputStream(templateBytes), config)) {
+			template.render(model).write(out);
+		}
+		return out.toByteArray();
+	}
+
+	Collection<ChartPart> getChartParts() {
+		return Collections.unmodifiableCollection(chartParts.values());
+	}
+
+	private void doRender(Object model, OutputStream out) throws IOException {
+		RenderDataCompute compute = config.getRenderDataComputeFactory().newCompute(model);
+		Map<ChartPart, ChartDataset> chartDatas = new HashMap<ChartPart, ChartDataset>();
+		Map<ChartPart, ChartDataset> sheetDatas = new HashMap<ChartPart, ChartDataset>();
+		for (ChartPart chartPart : chartParts.values()) {
+			Object data = compute.compute(chartPart.tagName);
+			if (data == null) {
+				// 与MyChartPolicy一致,删除所有系列,sheet保持不变
+				chartDatas.put(chartPart, EMPTY_DATASET);
+				continue;
+			}
+			if (!(data instanceof JSONArray)) {
+				throw new RenderException("Chart tag " + chartPart.tagName + " requires JSONArray data, but was "
+						+ data.getClass().getName());
+			}
+			ChartDataset dataset = ChartDataset.encode((JSONArray) data, labelDictionary);
+			chartDatas.put(chartPart, dataset);
+			sheetDatas.put(chartPart, dataset);
+		}
+
+		try (ZipFile zipFile = new ZipFile(new SeekableInMemoryByteChannel(templateBytes));
+				ZipArchiveOutputStream zos = new ZipArchiveOutputStream(new NonClosingOutputStream(out))) {
+			Enumeration<ZipArchiveEntry> entries = zipFile.getEntriesInPhysicalOrder();
+			while (entries.hasMoreElements()) {
+				ZipArchiveEntry entry = entries.nextElement();
+				ChartPart chartPart = chartParts.get(entry.getName());
+				if (chartPart != null) {
+					zos.putArchiveEntry(new ZipArchiveEntry(entry.getName()));
+					try (InputStream in = zipFile.getInputStream(entry)) {
+						ChartPartWriter.writeChart(in, zos, chartPart.sheetName, chartDatas.get(chartPart));
+					} catch (XMLStreamException | RuntimeException e) {
+						throw renderFailed(chartPart, e);
+					}
+					zos.closeArchiveEntry();
+					continue;
+				}
+				chartPart = workbookParts.get(entry.getName());
+				if (chartPart != null && sheetDatas.containsKey(chartPart)) {
+					byte[] workbookBytes;
+					try (InputStream in = zipFile.getInputStream(entry)) {
+						workbookBytes = IOUtils.toByteArray(in);
+					}
+					zos.putArchiveEntry(new ZipArchiveEntry(entry.getName()));
+					try {
+						writeWorkbook(workbookBytes, zos, chartPart, sheetDatas.get(chartPart));
+					} catch (XMLStreamException | RuntimeException e) {
+						throw renderFailed(chartPart, e);
+					}
+					zos.closeArchiveEntry();
+					continue;
+				}
+				// 其余entry不解压,原样复制
+				zos.addRawArchiveEntry(entry, zipFile.getRawInputStream(entry));
+			}
+			zos.finish();
+		}
+	}
+
+	/**
+	 * 与AbstractRenderPolicy一致,单个图表渲染失败时报告标签
+	 */
+	private static RenderException renderFailed(ChartPart chartPart, Exception e) {
+		return new RenderException("Render template " + chartPart.source + " failed!", e);
+	}
+
+	/**
+	 * 改写内嵌EXCEL中的sheet,其余entry原样复制。与XSSFWorkbook.removeSheetAt一致,删除计算链,
+	 * 新sheet中不再有公式,原计算链引用的是旧单元格
+	 *
+	 * @param workbookBytes
+	 * @param out
+	 * @param chartPart
+	 * @param dataset
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	static void writeWorkbook(byte[] workbookBytes, OutputStream out, ChartPart chartPart, ChartDataset dataset)
+			throws IOException, XMLStreamException {
+		try (ZipFile zipFile = new ZipFile(new SeekableInMemoryByteChannel(workbookBytes));
+				ZipArchiveOutputStream zos = new ZipArchiveOutputStream(new NonClosingOutputStream(out))) {
+			Enumeration<ZipArchiveEntry> entries = zipFile.getEntriesInPhysicalOrder();
+			while (entries.hasMoreElements()) {
+				ZipArchiveEntry entry = entries.nextElement();
+				if (entry.getName().equals(chartPart.calcChainEntry)) {
+					continue;
+				}
+				if (chartPart.sheetEntry.equals(entry.getName())) {
+					zos.putArchiveEntry(new ZipArchiveEntry(entry.getName()));
+					try (InputStream in = zipFile.getInputStream(entry)) {
+						ChartPartWriter.writeSheet(in, zos, dataset);
+					}
+					zos.closeArchiveEntry();
+				} else if (isCalcChainReference(chartPart, entry.getName())) {
+					zos.putArchiveEntry(new ZipArchiveEntry(entry.getName()));
+					try (InputStream in = zipFile.getInputStream(entry)) {
+						removeCalcChainReference(chartPart, entry.getName(), in, zos);
+					}
+					zos.closeArchiveEntry();
+				} else {
+					zos.addRawArchiveEntry(entry, zipFile.getRawInputStream(entry));
+				}
+			}
+			zos.finish();
+		}
+	}
+
+	/**
+	 * @return entry是否为引用计算链的内容类型或workbook关系
+	 */
+	static boolean isCalcChainReference(ChartPart chartPart, String entryName) {
+		return chartPart.calcChainEntry != null
+				&& (CONTENT_TYPES_ENTRY.equals(entryName) || entryName.equals(chartPart.workbookRelsEntry));
+	}
+
+	static void removeCalcChainReference(ChartPart chartPart, String entryName, InputStream in, OutputStream out)
+			throws XMLStreamException {
+		if (CONTENT_TYPES_ENTRY.equals(entryName)) {
+			ChartPartWriter.removeElements(in, out, "Override", "PartName", "/" + chartPart.calcChainEntry);
+		} else {
+			ChartPartWriter.removeElements(in, out, "Relationship", "Type", XSSFRelation.CALC_CHAIN.getRelation());
+		}
+	}
+
+	/**
+	 * 模板中一个图表标签对应的zip entry
+	 */
+	static class ChartPart {
+		String tagName;
+		// 模板中的标签,如{{tag}}
+		String source;
+		String chartEntry;
+		String workbookEntry;
+		String sheetName;
+		String sheetEntry;
+		// 内嵌EXCEL没有计算链时为null
+		String calcChainEntry;
+		String workbookRelsEntry;
+	}
+
+	/**
+	 * ZipArchiveOutputStream关闭时不关闭调用方的输出流
+	 */
+	private static class NonClosingOutputStream extends FilterOutputStream {
+
+		NonClosingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+		}
+
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
+	}
+
+}
@@ -0,0 +1,215 @@
+package com.wordchart.render;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.util.IOUtils;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import com.wordchart.render.ChartPartRenderer.ChartPart;
+
+/**
+ * 校验快速渲染的结果与MyChartPolicy的结果在语义上一致:
+ * 图表xml按元素、属性、文本比较(忽略命名空间前缀与声明),内嵌EXCEL按单元格的值比较
+ */
+public class ChartPartVerifier {
+
+	private static final int MAX_DIFFERENCES = 20;
+
+	private ChartPartVerifier() {
+	}
+
+	/**
+	 * 同一份数据分别走常规渲染与快速渲染,返回差异,为空表示一致
+	 *
+	 * @param renderer
+	 * @param model
+	 * @return
+	 * @throws IOException
+	 */
+	public static List<String> verify(ChartPartRenderer renderer, Object model) throws IOException {
+		return compare(renderer.renderByPolicy(model), renderer.doRender(model), renderer.getChartParts());
+	}
+
+	static List<String> compare(byte[] expected, byte[] actual, Collection<ChartPart> chartParts)
+			throws IOException {
+		List<String> differences = new ArrayList<String>();
+		try (ZipFile expectedZip = new ZipFile(new SeekableInMemoryByteChannel(expected));
+				ZipFile actualZip = new ZipFile(new SeekableInMemoryByteChannel(actual))) {
+			for (ChartPart chartPart : chartParts) {
+				compareChart(chartPart.chartEntry, read(expectedZip, chartPart.chartEntry),
+						read(actualZip, chartPart.chartEntry), differences);
+				compareWorkbook(chartPart.workbookEntry, read(expectedZip, chartPart.workbookEntry),
+						read(actualZip, chartPart.workbookEntry), differences);
+			}
+		}
+		return differences.size() > MAX_DIFFERENCES ? differences.subList(0, MAX_DIFFERENCES) : differences;
+	}
+
+	private static byte[] read(ZipFile zipFile, String entryName) throws IOException {
+		ZipArchiveEntry entry = zipFile.getEntry(entryName);
+		if (entry == null) {
+			return null;
+		}
+		try (InputStream in = zipFile.getInputStream(entry)) {
+			return IOUtils.toByteArray(in);
+		}
+	}
+
+	private static void compareChart(String entryName, byte[] expected, byte[] actual, List<String> differences)
+			throws IOException {
+		if (expected == null || actual == null) {
+			if (expected != actual) {
+				differences.add(entryName + ": missing entry");
+			}
+			return;
+		}
+		try {
+			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+			factory.setNamespaceAware(true);
+			factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+			DocumentBuilder builder = factory.newDocumentBuilder();
+			Element expectedRoot = builder.parse(new ByteArrayInputStream(expected)).getDocumentElement();
+			Element actualRoot = builder.parse(new ByteArrayInputStream(actual)).getDocumentElement();
+			compareElement(entryName + ":/" + expectedRoot.getLocalName(), expectedRoot, actualRoot, differences);
+		} catch (ParserConfigurationException | SAXException e) {
+			throw new IOException("Unable to parse chart " + entryName, e);
+		}
+	}
+
+	private static void compareElement(String path, Element expected, Element actual, List<String> differences) {
+		if (!sameName(expected, actual)) {
+			differences.add(path + ": expected element " + expected.getLocalName() + " but was "
+					+ actual.getLocalName());
+			return;
+		}
+		Map<String, String> expectedAttributes = attributes(expected);
+		Map<String, String> actualAttributes = attributes(actual);
+		if (!expectedAttributes.equals(actualAttributes)) {
+			differences.add(path + ": expected attributes " + expectedAttributes + " but was " + actualAttributes);
+		}
+		List<Element> expectedChildren = children(expected);
+		List<Element> actualChildren = children(actual);
+		if (expectedChildren.isEmpty() && actualChildren.isEmpty()) {
+			String expectedText = expected.getTextContent().trim();
+			String actualText = actual.getTextContent().trim();
+			if (!expectedText.equals(actualText)) {
+				differences.add(path + ": expected text '" + expectedText + "' but was '" + actualText + "'");
+			}
+			return;
+		}
+		if (expectedChildren.size() != actualChildren.size()) {
+			differences.add(path + ": expected " + expectedChildren.size() + " children but was "
+					+ actualChildren.size());
+		}
+		for (int i = 0; i < Math.min(expectedChildren.size(), actualChildren.size()); i++) {
+			Element expectedChild = expectedChildren.get(i);
+			compareElement(path + "/" + expectedChild.getLocalName() + "[" + i + "]", expectedChild,
+					actualChildren.get(i), differences);
+		}
+	}
+
+	private static boolean sameName(Node expected, Node actual) {
+		String expectedNs = expected.getNamespaceURI();
+		String actualNs = actual.getNamespaceURI();
+		return (expectedNs == null ? actualNs == null : expectedNs.equals(actualNs))
+				&& expected.getLocalName().equals(actual.getLocalName());
+	}
+
+	private static Map<String, String> attributes(Element element) {
+		Map<String, String> attributes = new TreeMap<String, String>();
+		NamedNodeMap nodeMap = element.getAttributes();
+		for (int i = 0; i < nodeMap.getLength(); i++) {
+			Attr attr = (Attr) nodeMap.item(i);
+			if ("http://www.w3.org/2000/xmlns/".equals(attr.getNamespaceURI())) {
+				continue;
+			}
+			String name = attr.getNamespaceURI() == null ? attr.getLocalName()
+					: "{" + attr.getNamespaceURI() + "}" + attr.getLocalName();
+			attributes.put(name, attr.getValue());
+		}
+		return attributes;
+	}
+
+	private static List<Element> children(Element element) {
+		List<Element> children = new ArrayList<Element>();
+		for (Node node = element.getFirstChild(); node != null; node = node.getNextSibling()) {
+			if (node.getNodeType() == Node.ELEMENT_NODE) {
+				children.add((Element) node);
+			}
+		}
+		return children;
+	}
+
+	private static void compareWorkbook(String entryName, byte[] expected, byte[] actual, List<String> differences)
+			throws IOException {
+		if (expected == null || actual == null) {
+			if (expected != actual) {
+				differences.add(entryName + ": missing entry");
+			}
+			return;
+		}
+		try (XSSFWorkbook expectedWorkbook = new XSSFWorkbook(new ByteArrayInputStream(expected));
+				XSSFWorkbook actualWorkbook = new XSSFWorkbook(new ByteArrayInputStream(actual))) {
+			Sheet expectedSheet = expectedWorkbook.getSheetAt(0);
+			Sheet actualSheet = actualWorkbook.getSheetAt(0);
+			if (!expectedSheet.getSheetName().equals(actualSheet.getSheetName())) {
+				differences.add(entryName + ": expected sheet " + expectedSheet.getSheetName() + " but was "
+						+ actualSheet.getSheetName());
+			}
+			int lastRowNum = Math.max(expectedSheet.getLastRowNum(), actualSheet.getLastRowNum());
+			for (int rowIndex = 0; rowIndex <= lastRowNum; rowIndex++) {
+				Row expectedRow = expectedSheet.getRow(rowIndex);
+				Row actualRow = actualSheet.getRow(rowIndex);
+				int lastCellNum = Math.max(expectedRow == null ? 0 : expectedRow.getLastCellNum(),
+						actualRow == null ? 0 : actualRow.getLastCellNum());
+				for (int colIndex = 0; colIndex < lastCellNum; colIndex++) {
+					String expectedValue = cellValue(expectedRow, colIndex);
+					String actualValue = cellValue(actualRow, colIndex);
+					if (!expectedValue.equals(actualValue)) {
+						differences.add(entryName + ": cell (" + rowIndex + "," + colIndex + ") expected "
+								+ expectedValue + " but was " + actualValue);
+					}
+				}
+			}
+		}
+	}
+
+	private static String cellValue(Row row, int colIndex) {
+		Cell cell = row == null ? null : row.getCell(colIndex);
+		if (cell == null || cell.getCellType() == CellType.BLANK) {
+			return "";
+		}
+		switch (cell.getCellType()) {
+		case STRING:
+			return "s:" + cell.getStringCellValue();
+		case NUMERIC:
+			return "n:" + cell.getNumericCellValue();
+		default:
+			return cell.getCellType() + ":" + cell.toString();
+		}
+	}
+
+}
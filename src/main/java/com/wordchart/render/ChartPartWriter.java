@@ -0,0 +1,466 @@
+package com.wordchart.render;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+
+
+/**
+ * 基于StAX直接改写图表xml与内嵌EXCEL的sheet xml,输出与MyChartPolicy一致
+ */
+final class ChartPartWriter {
+
+	static final String CHART_NS = "http://schemas.openxmlformats.org/drawingml/2006/chart";
+
+	private static final String XSI_NS = "http://www.w3.org/2001/XMLSchema-instance";
+
+	// barChart中位于ser之后的元素,遇到时补齐新增的系列
+	private static final Set<String> AFTER_SER = new HashSet<String>(
+			Arrays.asList("dLbls", "gapWidth", "overlap", "serLines", "axId", "extLst"));
+
+	// 新建sheet时不会保留的元素,它们引用的是旧单元格
+	private static final Set<String> DROPPED_SHEET_ELEMENTS = new HashSet<String>(Arrays.asList("autoFilter",
+			"sortState", "mergeCells", "conditionalFormatting", "dataValidations", "hyperlinks", "ignoredErrors",
+			"tableParts"));
+
+	private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+	private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+	private static final XMLEventFactory EVENT_FACTORY = XMLEventFactory.newInstance();
+
+	static {
+		INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+	}
+
+	private ChartPartWriter() {
+	}
+
+	/**
+	 * 改写图表xml,参考MyChartPolicy.refreshGraphContent方法
+	 *
+	 * @param in
+	 * @param out
+	 * @param sheetName
+	 * @param dataset
+	 * @throws XMLStreamException
+	 */
+	static void writeChart(InputStream in, OutputStream out, String sheetName, ChartDataset dataset)
+			throws XMLStreamException {
+		XMLEventReader reader = INPUT_FACTORY.createXMLEventReader(in);
+		XMLEventWriter writer = OUTPUT_FACTORY.createXMLEventWriter(out, "UTF-8");
+		boolean barChartDone = false;
+		while (reader.hasNext()) {
+			XMLEvent event = reader.nextEvent();
+			writer.add(event);
+			// 与MyChartPolicy一致,只处理第一个柱状图
+			if (!barChartDone && event.isStartElement() && isChart(event.asStartElement(), "barChart")) {
+				rewriteBarChart(reader, writer, event.asStartElement().getName().getPrefix(), sheetName, dataset);
+				barChartDone = true;
+			}
+		}
+		writer.flush();
+		writer.close();
+		reader.close();
+	}
+
+	/**
+	 * 改写sheet xml,参考MyChartPolicy.refreshExcel方法
+	 *
+	 * @param in
+	 * @param out
+	 * @param dataset
+	 * @throws XMLStreamException
+	 */
+	static void writeSheet(InputStream in, OutputStream out, ChartDataset dataset) throws XMLStreamException {
+		XMLEventReader reader = INPUT_FACTORY.createXMLEventReader(in);
+		XMLEventWriter writer = OUTPUT_FACTORY.createXMLEventWriter(out, "UTF-8");
+		int depth = 0;
+		while (reader.hasNext()) {
+			XMLEvent event = reader.nextEvent();
+			if (event.isStartElement()) {
+				depth++;
+				StartElement start = event.asStartElement();
+				String localName = start.getName().getLocalPart();
+				if (depth == 2 && "dimension".equals(localName)) {
+					writer.add(withAttribute(start, "ref", dimension(dataset)));
+					copyElement(reader, writer);
+					depth--;
+					continue;
+				}
+				if (depth == 2 && "sheetData".equals(localName)) {
+					writer.add(event);
+					skipElement(reader);
+					writeRows(writer, start.getName(), dataset);
+					writer.add(EVENT_FACTORY.createEndElement(start.getName(), null));
+					depth--;
+					continue;
+				}
+				if (depth == 2 && DROPPED_SHEET_ELEMENTS.contains(localName)) {
+					skipElement(reader);
+					depth--;
+					continue;
+				}
+			} else if (event.isEndElement()) {
+				depth--;
+			}
+			writer.add(event);
+		}
+		writer.flush();
+		writer.close();
+		reader.close();
+	}
+
+	/**
+	 * 删除根元素下指定属性值的子元素,如[Content_Types].xml中的Override、关系part中的Relationship
+	 *
+	 * @param in
+	 * @param out
+	 * @param localName
+	 * @param attribute
+	 * @param value     part名不区分大小写
+	 * @throws XMLStreamException
+	 */
+	static void removeElements(InputStream in, OutputStream out, String localName, String attribute, String value)
+			throws XMLStreamException {
+		XMLEventReader reader = INPUT_FACTORY.createXMLEventReader(in);
+		XMLEventWriter writer = OUTPUT_FACTORY.createXMLEventWriter(out, "UTF-8");
+		int depth = 0;
+		while (reader.hasNext()) {
+			XMLEvent event = reader.nextEvent();
+			if (event.isStartElement()) {
+				depth++;
+				StartElement start = event.asStartElement();
+				Attribute attr = start.getAttributeByName(new QName(attribute));
+				if (depth == 2 && localName.equals(start.getName().getLocalPart()) && attr != null
+						&& value.equalsIgnoreCase(attr.getValue())) {
+					skipElement(reader);
+					depth--;
+					continue;
+				}
+			} else if (event.isEndElement()) {
+				depth--;
+			}
+			writer.add(event);
+		}
+		writer.flush();
+		writer.close();
+		reader.close();
+	}
+
+	private static void rewriteBarChart(XMLEventReader reader, XMLEventWriter writer, String prefix,
+			String sheetName, ChartDataset dataset) throws XMLStreamException {
+		int serIndex = 0;
+		boolean newSersWritten = false;
+		while (true) {
+			XMLEvent event = reader.nextEvent();
+			if (event.isStartElement()) {
+				StartElement start = event.asStartElement();
+				if (isChart(start, "ser")) {
+					// 按照新系列的数量删减老系列,保留的老系列沿用原有样式
+					if (serIndex < dataset.seriesCount()) {
+						writer.add(event);
+						rewriteSer(reader, writer, prefix, sheetName, dataset, serIndex);
+					} else {
+						skipElement(reader);
+					}
+					serIndex++;
+					continue;
+				}
+				if (!newSersWritten && AFTER_SER.contains(start.getName().getLocalPart())) {
+					writeNewSers(writer, prefix, sheetName, dataset, serIndex);
+					newSersWritten = true;
+				}
+				writer.add(event);
+				copyElement(reader, writer);
+				continue;
+			}
+			if (event.isEndElement()) {
+				if (!newSersWritten) {
+					writeNewSers(writer, prefix, sheetName, dataset, serIndex);
+				}
+				writer.add(event);
+				return;
+			}
+			writer.add(event);
+		}
+	}
+
+	/**
+	 * 老系列去掉tx、cat、val后按schema顺序重新写入
+	 */
+	private static void rewriteSer(XMLEventReader reader, XMLEventWriter writer, String prefix, String sheetName,
+			ChartDataset dataset, int serIndex) throws XMLStreamException {
+		boolean txWritten = false;
+		boolean dataWritten = false;
+		while (true) {
+			XMLEvent event = reader.nextEvent();
+			if (event.isStartElement()) {
+				String localName = event.asStartElement().getName().getLocalPart();
+				if ("tx".equals(localName) || "cat".equals(localName) || "val".equals(localName)) {
+					skipElement(reader);
+					continue;
+				}
+				if (!txWritten && !"idx".equals(localName) && !"order".equals(localName)) {
+					writeTx(writer, prefix, sheetName, dataset, serIndex);
+					txWritten = true;
+				}
+				if (!dataWritten && ("shape".equals(localName) || "extLst".equals(localName))) {
+					writeCatVal(writer, prefix, sheetName, dataset, serIndex);
+					dataWritten = true;
+				}
+				writer.add(event);
+				copyElement(reader, writer);
+				continue;
+			}
+			if (event.isEndElement()) {
+				if (!txWritten) {
+					writeTx(writer, prefix, sheetName, dataset, serIndex);
+				}
+				if (!dataWritten) {
+					writeCatVal(writer, prefix, sheetName, dataset, serIndex);
+				}
+				writer.add(event);
+				return;
+			}
+			writer.add(event);
+		}
+	}
+
+	private static void writeNewSers(XMLEventWriter writer, String prefix, String sheetName, ChartDataset dataset,
+			int fromIndex) throws XMLStreamException {
+		for (int serIndex = fromIndex; serIndex < dataset.seriesCount(); serIndex++) {
+			start(writer, prefix, "ser");
+			writeTx(writer, prefix, sheetName, dataset, serIndex);
+			writeCatVal(writer, prefix, sheetName, dataset, serIndex);
+			end(writer, prefix, "ser");
+		}
+	}
+
+	private static void writeTx(XMLEventWriter writer, String prefix, String sheetName, ChartDataset dataset,
+			int serIndex) throws XMLStreamException {
+		// 系列名区域
+		String serDataRange = new CellRangeAddress(0, 0, serIndex + 1, serIndex + 1).formatAsString(sheetName, true);
+		start(writer, prefix, "tx");
+		start(writer, prefix, "strRef");
+		text(writer, prefix, "f", serDataRange);
+		start(writer, prefix, "strCache");
+		writeLabelPt(writer, prefix, 0, dataset, dataset.seriesId(serIndex));
+		end(writer, prefix, "strCache");
+		end(writer, prefix, "strRef");
+		end(writer, prefix, "tx");
+	}
+
+	private static void writeCatVal(XMLEventWriter writer, String prefix, String sheetName, ChartDataset dataset,
+			int serIndex) throws XMLStreamException {
+		int axisCount = dataset.axisCount();
+		// 序列区域
+		String axisDataRange = new CellRangeAddress(1, dataset.rowCount() - 1, 0, 0).formatAsString(sheetName, true);
+		start(writer, prefix, "cat");
+		start(writer, prefix, "strRef");
+		text(writer, prefix, "f", axisDataRange);
+		start(writer, prefix, "strCache");
+		writePtCount(writer, prefix, axisCount);
+		for (int idx = 0; idx < axisCount; idx++) {
+			writeLabelPt(writer, prefix, idx, dataset, dataset.axisId(idx));
+		}
+		end(writer, prefix, "strCache");
+		end(writer, prefix, "strRef");
+		end(writer, prefix, "cat");
+
+		// 数据区域
+		String numDataRange = new CellRangeAddress(1, dataset.rowCount() - 1, serIndex + 1, serIndex + 1)
+				.formatAsString(sheetName, true);
+		start(writer, prefix, "val");
+		start(writer, prefix, "numRef");
+		text(writer, prefix, "f", numDataRange);
+		start(writer, prefix, "numCache");
+		writePtCount(writer, prefix, axisCount);
+		for (int idx = 0; idx < axisCount; idx++) {
+			String value = dataset.value(idx, serIndex + 1);
+			writePt(writer, prefix, idx, value == null ? null : EVENT_FACTORY.createCharacters(value));
+		}
+		end(writer, prefix, "numCache");
+		end(writer, prefix, "numRef");
+		end(writer, prefix, "val");
+	}
+
+	private static void writePtCount(XMLEventWriter writer, String prefix, int count) throws XMLStreamException {
+		start(writer, prefix, "ptCount");
+		writer.add(EVENT_FACTORY.createAttribute("val", String.valueOf(count)));
+		end(writer, prefix, "ptCount");
+	}
+
+	private static void writeLabelPt(XMLEventWriter writer, String prefix, int idx, ChartDataset dataset,
+			int labelId) throws XMLStreamException {
+		writePt(writer, prefix, idx, labelId == ChartDataset.NULL_ID ? null : dataset.characters(labelId));
+	}
+
+	private static void writePt(XMLEventWriter writer, String prefix, int idx, Characters value)
+			throws XMLStreamException {
+		start(writer, prefix, "pt");
+		writer.add(EVENT_FACTORY.createAttribute("idx", String.valueOf(idx)));
+		start(writer, prefix, "v");
+		if (value == null) {
+			// 与XMLBeans对null值的处理一致
+			writer.add(EVENT_FACTORY.createNamespace("xsi", XSI_NS));
+			writer.add(EVENT_FACTORY.createAttribute("xsi", XSI_NS, "nil", "true"));
+		} else {
+			writer.add(value);
+		}
+		end(writer, prefix, "v");
+		end(writer, prefix, "pt");
+	}
+
+	/**
+	 * 写入行数据,参考MyChartPolicy.createRows、createCells方法
+	 */
+	private static void writeRows(XMLEventWriter writer, QName sheetData, ChartDataset dataset)
+			throws XMLStreamException {
+		String prefix = sheetData.getPrefix();
+		String ns = sheetData.getNamespaceURI();
+		for (int rowIndex = 0; rowIndex < dataset.rowCount(); rowIndex++) {
+			writer.add(EVENT_FACTORY.createStartElement(prefix, ns, "row"));
+			writer.add(EVENT_FACTORY.createAttribute("r", String.valueOf(rowIndex + 1)));
+			for (int colIndex = 0; colIndex < dataset.width(rowIndex); colIndex++) {
+				String ref = CellReference.convertNumToColString(colIndex) + (rowIndex + 1);
+				writer.add(EVENT_FACTORY.createStartElement(prefix, ns, "c"));
+				writer.add(EVENT_FACTORY.createAttribute("r", ref));
+				// 首行、首列分别代表系列名、横坐标,取自编码后的标签
+				if (rowIndex == 0 || colIndex == 0) {
+					int labelId = rowIndex == 0 ? dataset.headerId(colIndex) : dataset.axisId(rowIndex - 1);
+					if (labelId != ChartDataset.NULL_ID) {
+						writeInlineString(writer, prefix, ns, dataset.characters(labelId),
+								dataset.preserveSpace(labelId));
+					}
+				} else {
+					String cellValueStr = dataset.value(rowIndex - 1, colIndex);
+					if (NumberUtils.isNumber(cellValueStr)) {
+						writer.add(EVENT_FACTORY.createStartElement(prefix, ns, "v"));
+						writer.add(EVENT_FACTORY.createCharacters(String.valueOf(Double.parseDouble(cellValueStr))));
+						writer.add(EVENT_FACTORY.createEndElement(prefix, ns, "v"));
+					} else if (cellValueStr != null) {
+						writeInlineString(writer, prefix, ns, EVENT_FACTORY.createCharacters(cellValueStr),
+								!cellValueStr.equals(cellValueStr.trim()));
+					}
+				}
+				writer.add(EVENT_FACTORY.createEndElement(prefix, ns, "c"));
+			}
+			writer.add(EVENT_FACTORY.createEndElement(prefix, ns, "row"));
+		}
+	}
+
+	/**
+	 * 使用内联字符串,不必改写sharedStrings
+	 */
+	private static void writeInlineString(XMLEventWriter writer, String prefix, String ns, Characters text,
+			boolean preserveSpace) throws XMLStreamException {
+		writer.add(EVENT_FACTORY.createAttribute("t", "inlineStr"));
+		writer.add(EVENT_FACTORY.createStartElement(prefix, ns, "is"));
+		writer.add(EVENT_FACTORY.createStartElement(prefix, ns, "t"));
+		if (preserveSpace) {
+			writer.add(EVENT_FACTORY.createAttribute("xml", "http://www.w3.org/XML/1998/namespace", "space",
+					"preserve"));
+		}
+		writer.add(text);
+		writer.add(EVENT_FACTORY.createEndElement(prefix, ns, "t"));
+		writer.add(EVENT_FACTORY.createEndElement(prefix, ns, "is"));
+	}
+
+	private static String dimension(ChartDataset dataset) {
+		if (dataset.rowCount() == 0) {
+			return "A1";
+		}
+		int lastCol = 0;
+		for (int rowIndex = 0; rowIndex < dataset.rowCount(); rowIndex++) {
+			lastCol = Math.max(lastCol, dataset.width(rowIndex) - 1);
+		}
+		return new CellRangeAddress(0, dataset.rowCount() - 1, 0, lastCol).formatAsString();
+	}
+
+	private static StartElement withAttribute(StartElement start, String name, String value) {
+		List<Attribute> attributes = new ArrayList<Attribute>();
+		Iterator<?> it = start.getAttributes();
+		while (it.hasNext()) {
+			Attribute attribute = (Attribute) it.next();
+			if (!name.equals(attribute.getName().getLocalPart())) {
+				attributes.add(attribute);
+			}
+		}
+		attributes.add(EVENT_FACTORY.createAttribute(name, value));
+		QName qName = start.getName();
+		return EVENT_FACTORY.createStartElement(qName.getPrefix(), qName.getNamespaceURI(), qName.getLocalPart(),
+				attributes.iterator(), start.getNamespaces());
+	}
+
+	private static boolean isChart(StartElement start, String localName) {
+		return CHART_NS.equals(start.getName().getNamespaceURI()) && localName.equals(start.getName().getLocalPart());
+	}
+
+	private static void start(XMLEventWriter writer, String prefix, String localName) throws XMLStreamException {
+		writer.add(EVENT_FACTORY.createStartElement(prefix, CHART_NS, localName));
+	}
+
+	private static void end(XMLEventWriter writer, String prefix, String localName) throws XMLStreamException {
+		writer.add(EVENT_FACTORY.createEndElement(prefix, CHART_NS, localName));
+	}
+
+	private static void text(XMLEventWriter writer, String prefix, String localName, String value)
+			throws XMLStreamException {
+		start(writer, prefix, localName);
+		writer.add(EVENT_FACTORY.createCharacters(value));
+		end(writer, prefix, localName);
+	}
+
+	/**
+	 * 跳过当前元素(开始标签已读取)的剩余内容
+	 */
+	private static void skipElement(XMLEventReader reader) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			XMLEvent event = reader.nextEvent();
+			if (event.isStartElement()) {
+				depth++;
+			} else if (event.isEndElement()) {
+				depth--;
+			}
+		}
+	}
+
+	/**
+	 * 原样复制当前元素(开始标签已写入)的剩余内容
+	 */
+	private static void copyElement(XMLEventReader reader, XMLEventWriter writer) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			XMLEvent event = reader.nextEvent();
+			if (event.isStartElement()) {
+				depth++;
+			} else if (event.isEndElement()) {
+				depth--;
+			}
+			writer.add(event);
+		}
+	}
+
+}
@@ -0,0 +1,350 @@
+package com.wordchart.render;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+import org.apache.poi.ooxml.POIXMLDocument;
+import org.apache.poi.ooxml.POIXMLDocumentPart;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackagePartName;
+import org.apache.poi.openxml4j.opc.PackageRelationship;
+import org.apache.poi.openxml4j.opc.PackagingURIHelper;
+import org.apache.poi.openxml4j.opc.TargetMode;
+import org.apache.poi.util.IOUtils;
+import org.apache.poi.xwpf.usermodel.XWPFChart;
+
+import com.alibaba.fastjson.JSONArray;
+import com.deepoove.poi.exception.RenderException;
+
+/**
+ * 图表原型:把模板图表的xml、内嵌EXCEL及其它关联part一次性读成字节,之后每个实例只复制字节、
+ * 流式改写数据并以新的part名、关系id加入文档,不再为每个副本解析XWPFChart与XSSFWorkbook。
+ * <p>
+ * 原型只保存模板内容,创建后不再修改,可在同一模板的多份文档、多个线程间共用,
+ * 可按fingerprint缓存;每份文档通过bind绑定到该文档中的模板图表后再复制。
+ * </p>
+ *
+ * <pre>
+ * ChartPrototype prototype = ChartPrototype.of(chart);
+ * ChartPrototype.Binding binding = prototype.bind(chart);
+ * String rId = binding.newInstance(rows);
+ * </pre>
+ *
+ * 关联part自身的关系不会被复制,图表常见的内嵌EXCEL、样式、配色part都没有下级关系
+ */
+public class ChartPrototype {
+
+	private static final Pattern PART_NAME_PATTERN = Pattern.compile("^(.*?)(\\d*)(\\.[^./]+)$");
+
+	private final String chartRelationType;
+
+	private final PackagePartName chartPartName;
+
+	private final String chartContentType;
+
+	private final byte[] chartBytes;
+
+	private final List<RelatedPart> relatedParts = new ArrayList<RelatedPart>();
+
+	private final String sheetName;
+
+	// 内嵌EXCEL中sheet、计算链的位置
+	private final ChartPartRenderer.ChartPart workbookLayout = new ChartPartRenderer.ChartPart();
+
+	private final List<WorkbookEntry> workbookEntries = new ArrayList<WorkbookEntry>();
+
+	private ChartPrototype(XWPFChart chart) throws IOException, InvalidFormatException {
+		PackagePart chartPart = chart.getPackagePart();
+		POIXMLDocumentPart parent = chart.getParent();
+		this.chartRelationType = parent.getPackagePart().getRelationship(parent.getRelationId(chart))
+				.getRelationshipType();
+		this.chartPartName = chartPart.getPartName();
+		this.chartContentType = chartPart.getContentType();
+		this.chartBytes = readPart(chartPart);
+
+		RelatedPart workbookPart = null;
+		for (PackageRelationship relationship : chartPart.getRelationships()) {
+			RelatedPart relatedPart = new RelatedPart();
+			relatedPart.id = relationship.getId();
+			relatedPart.type = relationship.getRelationshipType();
+			if (relationship.getTargetMode() == TargetMode.EXTERNAL) {
+				relatedPart.externalTarget = relationship.getTargetURI().toString();
+			} else {
+				PackagePart target = chartPart.getRelatedPart(relationship);
+				relatedPart.partName = target.getPartName();
+				relatedPart.contentType = target.getContentType();
+				relatedPart.bytes = readPart(target);
+				if (workbookPart == null && POIXMLDocument.PACK_OBJECT_REL_TYPE.equals(relatedPart.type)) {
+					workbookPart = relatedPart;
+					workbookPart.workbook = true;
+				}
+			}
+			relatedParts.add(relatedPart);
+		}
+		if (workbookPart == null) {
+			throw new RenderException("Chart " + chartPartName.getName() + " has no embedded workbook");
+		}
+		ChartPartRenderer.resolveWorkbook(workbookLayout, chart.getWorkbook());
+		this.sheetName = workbookLayout.sheetName;
+
+		// 内嵌EXCEL也拆成entry,sheet之外的entry保留压缩后的原始字节,计算链同快速渲染一并删除
+		try (ZipFile zipFile = new ZipFile(new SeekableInMemoryByteChannel(workbookPart.bytes))) {
+			Enumeration<ZipArchiveEntry> entries = zipFile.getEntriesInPhysicalOrder();
+			while (entries.hasMoreElements()) {
+				ZipArchiveEntry entry = entries.nextElement();
+				if (entry.getName().equals(workbookLayout.calcChainEntry)) {
+					continue;
+				}
+				WorkbookEntry workbookEntry = new WorkbookEntry();
+				workbookEntry.entry = entry;
+				workbookEntry.sheet = workbookLayout.sheetEntry.equals(entry.getName());
+				boolean calcChainReference = ChartPartRenderer.isCalcChainReference(workbookLayout, entry.getName());
+				workbookEntry.raw = !workbookEntry.sheet && !calcChainReference;
+				try (InputStream in = workbookEntry.raw ? zipFile.getRawInputStream(entry)
+						: zipFile.getInputStream(entry)) {
+					if (calcChainReference) {
+						ByteArrayOutputStream out = new ByteArrayOutputStream();
+						ChartPartRenderer.removeCalcChainReference(workbookLayout, entry.getName(), in, out);
+						workbookEntry.bytes = out.toByteArray();
+					} else {
+						workbookEntry.bytes = IOUtils.toByteArray(in);
+					}
+				}
+				workbookEntries.add(workbookEntry);
+			}
+		} catch (XMLStreamException e) {
+			throw new RenderException("Unable to read the workbook of chart " + chartPartName.getName(), e);
+		}
+	}
+
+	/**
+	 * 须在图表被渲染前创建,此时part中仍是模板内容
+	 *
+	 * @param chart
+	 * @return
+	 * @throws IOException
+	 */
+	public static ChartPrototype of(XWPFChart chart) throws IOException {
+		try {
+			return new ChartPrototype(chart);
+		} catch (InvalidFormatException e) {
+			throw new RenderException("Unable to read chart " + chart.getPackagePart().getPartName().getName(), e);
+		}
+	}
+
+	/**
+	 * 模板图表的内容摘要:part名、图表xml、关系及关联part的字节。用于缓存原型,
+	 * 只读取字节,不解析图表与内嵌EXCEL
+	 *
+	 * @param chart 尚未渲染的模板图表
+	 * @return
+	 * @throws IOException
+	 */
+	public static String fingerprint(XWPFChart chart) throws IOException {
+		PackagePart chartPart = chart.getPackagePart();
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RenderException("SHA-256 is not available", e);
+		}
+		update(digest, chartPart.getPartName().getName());
+		update(digest, chartPart);
+		try {
+			for (PackageRelationship relationship : chartPart.getRelationships()) {
+				update(digest, relationship.getId());
+				update(digest, relationship.getRelationshipType());
+				if (relationship.getTargetMode() == TargetMode.EXTERNAL) {
+					update(digest, relationship.getTargetURI().toString());
+				} else {
+					update(digest, chartPart.getRelatedPart(relationship));
+				}
+			}
+		} catch (InvalidFormatException e) {
+			throw new RenderException("Unable to read chart " + chartPart.getPartName().getName(), e);
+		}
+		return Base64.getEncoder().encodeToString(digest.digest());
+	}
+
+	private static void update(MessageDigest digest, String text) {
+		digest.update(text.getBytes(StandardCharsets.UTF_8));
+		// 分隔相邻字段
+		digest.update((byte) 0);
+	}
+
+	private static void update(MessageDigest digest, PackagePart part) throws IOException {
+		byte[] buffer = new byte[8192];
+		try (InputStream in = part.getInputStream()) {
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, n);
+			}
+		}
+		digest.update((byte) 0);
+	}
+
+	/**
+	 * 绑定到一份文档中由该模板图表渲染出的图表,同一份文档的所有复制共用一个Binding
+	 *
+	 * @param chart 文档中的模板图表
+	 * @return
+	 */
+	public Binding bind(XWPFChart chart) {
+		return new Binding(chart);
+	}
+
+	private void writeWorkbook(OutputStream out, ChartDataset dataset) throws IOException, XMLStreamException {
+		try (ZipArchiveOutputStream zos = new ZipArchiveOutputStream(out)) {
+			for (WorkbookEntry workbookEntry : workbookEntries) {
+				if (workbookEntry.raw) {
+					zos.addRawArchiveEntry(workbookEntry.entry, new ByteArrayInputStream(workbookEntry.bytes));
+					continue;
+				}
+				zos.putArchiveEntry(new ZipArchiveEntry(workbookEntry.entry.getName()));
+				if (workbookEntry.sheet) {
+					ChartPartWriter.writeSheet(new ByteArrayInputStream(workbookEntry.bytes), zos, dataset);
+				} else {
+					zos.write(workbookEntry.bytes);
+				}
+				zos.closeArchiveEntry();
+			}
+			zos.finish();
+		}
+	}
+
+	/**
+	 * 原型在一份文档中的复制目标,非线程安全
+	 */
+	public class Binding {
+
+		private final OPCPackage pkg;
+
+		private final PackagePart parentPart;
+
+		// key为去掉序号后的part名,value为下一个候选序号
+		private final Map<String, Integer> nextIndexes = new HashMap<String, Integer>();
+
+		private Binding(XWPFChart chart) {
+			this.pkg = chart.getPackagePart().getPackage();
+			this.parentPart = chart.getParent().getPackagePart();
+		}
+
+		/**
+		 * 复制一个图表实例并写入数据,数据格式同MyChartPolicy
+		 *
+		 * @param rows
+		 * @return 文档到新图表的关系id,用于c:chart的r:id
+		 * @throws IOException
+		 */
+		public String newInstance(JSONArray rows) throws IOException {
+			try {
+				ChartDataset dataset = ChartDataset.encode(rows, null);
+				PackagePart chartPart = createPart(chartPartName, chartContentType);
+				try (OutputStream out = chartPart.getOutputStream()) {
+					ChartPartWriter.writeChart(new ByteArrayInputStream(chartBytes), out, sheetName, dataset);
+				}
+				for (RelatedPart relatedPart : relatedParts) {
+					if (relatedPart.externalTarget != null) {
+						chartPart.addExternalRelationship(relatedPart.externalTarget, relatedPart.type,
+								relatedPart.id);
+						continue;
+					}
+					PackagePart part = createPart(relatedPart.partName, relatedPart.contentType);
+					try (OutputStream out = part.getOutputStream()) {
+						if (relatedPart.workbook) {
+							writeWorkbook(out, dataset);
+						} else {
+							out.write(relatedPart.bytes);
+						}
+					}
+					// 图表xml中引用的关系id保持不变
+					chartPart.addRelationship(part.getPartName(), TargetMode.INTERNAL, relatedPart.type,
+							relatedPart.id);
+				}
+				return parentPart.addRelationship(chartPart.getPartName(), TargetMode.INTERNAL, chartRelationType)
+						.getId();
+			} catch (XMLStreamException e) {
+				throw new RenderException("Render chart instance error", e);
+			}
+		}
+
+		private PackagePart createPart(PackagePartName prototypeName, String contentType) {
+			return pkg.createPart(nextPartName(prototypeName), contentType);
+		}
+
+		/**
+		 * 按原part名递增序号,如/word/charts/chart1.xml -> /word/charts/chart2.xml
+		 */
+		private PackagePartName nextPartName(PackagePartName prototypeName) {
+			Matcher matcher = PART_NAME_PATTERN.matcher(prototypeName.getName());
+			if (!matcher.matches()) {
+				throw new RenderException("Unsupported part name: " + prototypeName.getName());
+			}
+			String key = matcher.group(1) + matcher.group(3);
+			Integer index = nextIndexes.get(key);
+			int next = index == null ? 1 : index;
+			try {
+				PackagePartName partName;
+				do {
+					partName = PackagingURIHelper.createPartName(matcher.group(1) + next++ + matcher.group(3));
+				} while (pkg.containPart(partName));
+				nextIndexes.put(key, next);
+				return partName;
+			} catch (InvalidFormatException e) {
+				throw new RenderException("Invalid part name: " + prototypeName.getName(), e);
+			}
+		}
+	}
+
+	private static byte[] readPart(PackagePart part) throws IOException {
+		try (InputStream in = part.getInputStream()) {
+			return IOUtils.toByteArray(in);
+		}
+	}
+
+	/**
+	 * 图表的一个关系及其目标part
+	 */
+	private static class RelatedPart {
+		String id;
+		String type;
+		String externalTarget;
+		PackagePartName partName;
+		String contentType;
+		byte[] bytes;
+		boolean workbook;
+	}
+
+	/**
+	 * 内嵌EXCEL中的一个entry,raw为true时是压缩后的原始字节,否则为解压后的字节
+	 */
+	private static class WorkbookEntry {
+		ZipArchiveEntry entry;
+		byte[] bytes;
+		boolean sheet;
+		boolean raw;
+	}
+
+}
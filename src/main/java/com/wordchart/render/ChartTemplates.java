@@ -0,0 +1,140 @@
+package com.wordchart.render;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.poi.util.IOUtils;
+
+import com.deepoove.poi.XWPFTemplate;
+import com.deepoove.poi.config.Configure;
+import com.deepoove.poi.config.ConfigureBuilder;
+import com.deepoove.poi.policy.MyChartIterablePolicy;
+import com.deepoove.poi.policy.MyChartPolicy;
+import com.deepoove.poi.template.MetaTemplate;
+import com.deepoove.poi.template.run.MyRunTemplate;
+
+/**
+ * 模板中图表标签的辅助方法
+ */
+public final class ChartTemplates {
+
+	// 未指定模板时使用的内置模板
+	public static final String DEFAULT_TEMPLATE = "/模板word-图表3.docx";
+
+	private ChartTemplates() {
+	}
+
+	/**
+	 * 读取模板,path为空时读取内置模板
+	 *
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 */
+	public static byte[] readTemplate(String path) throws IOException {
+		try (InputStream in = path == null ? ChartTemplates.class.getResourceAsStream(DEFAULT_TEMPLATE)
+				: new FileInputStream(path)) {
+			if (in == null) {
+				throw new IOException("Template not found: " + DEFAULT_TEMPLATE);
+			}
+			return IOUtils.toByteArray(in);
+		}
+	}
+
+	/**
+	 * 找出模板中所有图表标签名
+	 *
+	 * @param templateBytes
+	 * @return
+	 * @throws IOException
+	 */
+	public static List<String> chartTagNames(byte[] templateBytes) throws IOException {
+		List<String> tagNames = new ArrayList<String>();
+		try (XWPFTemplate template = XWPFTemplate.compile(new ByteArrayInputStream(templateBytes))) {
+			for (MetaTemplate metaTemplate : template.getElementTemplates()) {
+				if (metaTemplate instanceof MyRunTemplate && ((MyRunTemplate) metaTemplate).getChart() != null) {
+					tagNames.add(((MyRunTemplate) metaTemplate).getTagName());
+				}
+			}
+		}
+		return tagNames;
+	}
+
+	/**
+	 * 找出模板中的图表区块{{?tag}},其数据为多份图表数据的列表
+	 *
+	 * @param templateBytes
+	 * @return
+	 * @throws IOException
+	 */
+	public static Set<String> chartBlockTagNames(byte[] templateBytes) throws IOException {
+		Set<String> tagNames = new LinkedHashSet<String>();
+		Configure defaultConfig = Configure.createDefault();
+		try (XWPFTemplate template = XWPFTemplate.compile(new ByteArrayInputStream(templateBytes))) {
+			for (MetaTemplate metaTemplate : template.getElementTemplates()) {
+				if (metaTemplate instanceof MyRunTemplate && ((MyRunTemplate) metaTemplate).getChart() != null
+						&& isChartBlock((MyRunTemplate) metaTemplate, defaultConfig)) {
+					tagNames.add(((MyRunTemplate) metaTemplate).getTagName());
+				}
+			}
+		}
+		return tagNames;
+	}
+
+	/**
+	 * 图表标签名与图表part名的对应关系,渲染后的文档中不再有标签,增量追加时按part名定位图表
+	 *
+	 * @param templateBytes
+	 * @return key为标签名,value为part名,如/word/charts/chart1.xml
+	 * @throws IOException
+	 */
+	public static Map<String, String> chartPartNames(byte[] templateBytes) throws IOException {
+		Map<String, String> partNames = new LinkedHashMap<String, String>();
+		try (XWPFTemplate template = XWPFTemplate.compile(new ByteArrayInputStream(templateBytes))) {
+			for (MetaTemplate metaTemplate : template.getElementTemplates()) {
+				if (metaTemplate instanceof MyRunTemplate && ((MyRunTemplate) metaTemplate).getChart() != null) {
+					MyRunTemplate runTemplate = (MyRunTemplate) metaTemplate;
+					partNames.put(runTemplate.getTagName(),
+							runTemplate.getChart().getPackagePart().getPartName().getName());
+				}
+			}
+		}
+		return partNames;
+	}
+
+	/**
+	 * 将模板中所有图表标签绑定到MyChartPolicy,图表区块绑定到MyChartIterablePolicy
+	 *
+	 * @param templateBytes
+	 * @return
+	 * @throws IOException
+	 */
+	public static Configure chartConfigure(byte[] templateBytes) throws IOException {
+		ConfigureBuilder configureBuilder = Configure.newBuilder();
+		Configure defaultConfig = Configure.createDefault();
+		try (XWPFTemplate template = XWPFTemplate.compile(new ByteArrayInputStream(templateBytes))) {
+			for (MetaTemplate metaTemplate : template.getElementTemplates()) {
+				if (metaTemplate instanceof MyRunTemplate && ((MyRunTemplate) metaTemplate).getChart() != null) {
+					MyRunTemplate runTemplate = (MyRunTemplate) metaTemplate;
+					// 图表区块{{?tag}}按数据项复制图表
+					configureBuilder.bind(runTemplate.getTagName(), isChartBlock(runTemplate, defaultConfig)
+							? new MyChartIterablePolicy() : new MyChartPolicy());
+				}
+			}
+		}
+		return configureBuilder.build();
+	}
+
+	private static boolean isChartBlock(MyRunTemplate runTemplate, Configure config) {
+		return runTemplate.getSign().charValue() == config.getIterable().getLeft();
+	}
+
+}
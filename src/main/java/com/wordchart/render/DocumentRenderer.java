@@ -0,0 +1,33 @@
+package com.wordchart.render;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import com.deepoove.poi.XWPFTemplate;
+import com.deepoove.poi.config.Configure;
+
+/**
+ * 渲染一份文档
+ */
+public interface DocumentRenderer {
+
+	byte[] render(Object model) throws Exception;
+
+	/**
+	 * 常规渲染流程:每次都重新编译模板
+	 *
+	 * @param templateBytes
+	 * @param config
+	 * @return
+	 */
+	static DocumentRenderer xwpf(byte[] templateBytes, Configure config) {
+		return model -> {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(templateBytes.length + 4096);
+			try (XWPFTemplate template = XWPFTemplate.compile(new ByteArrayInputStream(templateBytes), config)) {
+				template.render(model).write(out);
+			}
+			return out.toByteArray();
+		};
+	}
+
+}
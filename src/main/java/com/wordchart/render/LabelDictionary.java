@@ -0,0 +1,98 @@
+package com.wordchart.render;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.events.Characters;
+
+/**
+ * 横坐标、系列名字典:批量渲染中同一批标签(月份、地区、产品名)会在成千上万份文档中重复出现,
+ * 标签只在第一次出现时编码为int id,并缓存写xml用的字符事件,之后的文档只携带id。
+ * <p>
+ * 线程安全,可由同一进程内的所有渲染共享。字典满后新标签不再收录,由ChartDataset自行保存。
+ * 已收录的标签不会淘汰,默认不启用,需通过ChartPartRenderer.setLabelDictionary显式指定。
+ * </p>
+ */
+public class LabelDictionary {
+
+	public static final int DEFAULT_MAX_SIZE = 1 << 16;
+
+	private static final XMLEventFactory EVENT_FACTORY = XMLEventFactory.newInstance();
+
+	private final int maxSize;
+
+	private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+
+	// 下标为id,扩容时整体替换
+	private volatile Label[] labels = new Label[64];
+
+	private int size;
+
+	public LabelDictionary() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	public LabelDictionary(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @param text 非null
+	 * @return id,字典已满时返回-1
+	 */
+	public int intern(String text) {
+		Integer id = ids.get(text);
+		if (id != null) {
+			return id;
+		}
+		synchronized (this) {
+			id = ids.get(text);
+			if (id != null) {
+				return id;
+			}
+			if (size >= maxSize) {
+				return -1;
+			}
+			if (size == labels.length) {
+				labels = Arrays.copyOf(labels, size * 2);
+			}
+			labels[size] = new Label(text);
+			// 先写入labels再发布id
+			ids.put(text, size);
+			return size++;
+		}
+	}
+
+	public String text(int id) {
+		return labels[id].text;
+	}
+
+	public int size() {
+		return ids.size();
+	}
+
+	Label label(int id) {
+		return labels[id];
+	}
+
+	/**
+	 * 一个标签及其预编码的xml字符事件
+	 */
+	static final class Label {
+
+		final String text;
+
+		final Characters characters;
+
+		// 首尾有空白时sheet中需要xml:space="preserve"
+		final boolean preserveSpace;
+
+		Label(String text) {
+			this.text = text;
+			this.characters = EVENT_FACTORY.createCharacters(text);
+			this.preserveSpace = !text.equals(text.trim());
+		}
+	}
+
+}
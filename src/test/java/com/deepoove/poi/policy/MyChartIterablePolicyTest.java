@@ -0,0 +1,77 @@
+package com.deepoove.poi.policy;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.apache.poi.xwpf.usermodel.XWPFChart;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.junit.Before;
+import org.junit.Test;
+import org.openxmlformats.schemas.drawingml.x2006.chart.STBarDir;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.deepoove.poi.config.Configure;
+import com.wordchart.load.ChartDataGenerator;
+import com.wordchart.render.ChartTemplates;
+import com.wordchart.render.DocumentRenderer;
+
+public class MyChartIterablePolicyTest {
+
+	private byte[] colTemplate;
+
+	private byte[] barTemplate;
+
+	@Before
+	public void setUp() throws Exception {
+		byte[] templateBytes = ChartTemplates.readTemplate(null);
+		colTemplate = blockTemplate(templateBytes, STBarDir.COL);
+		barTemplate = blockTemplate(templateBytes, STBarDir.BAR);
+	}
+
+	@Test
+	public void copiesFollowTheirTemplate() throws Exception {
+		// 同一Configure渲染两个图表part名相同、内容不同的模板
+		Configure config = ChartTemplates.chartConfigure(colTemplate);
+		assertBarDirs(DocumentRenderer.xwpf(colTemplate, config).render(model(3)), STBarDir.COL, 3);
+		assertBarDirs(DocumentRenderer.xwpf(barTemplate, config).render(model(3)), STBarDir.BAR, 3);
+		assertBarDirs(DocumentRenderer.xwpf(colTemplate, config).render(model(2)), STBarDir.COL, 2);
+	}
+
+	/**
+	 * 把内置模板的图表改为区块{{?charts}},并设置柱形方向
+	 */
+	private static byte[] blockTemplate(byte[] templateBytes, STBarDir.Enum barDir) throws Exception {
+		try (XWPFDocument doc = new XWPFDocument(new ByteArrayInputStream(templateBytes))) {
+			XWPFChart chart = doc.getCharts().get(0);
+			chart.getWorkbook().getSheetAt(0).getRow(0).getCell(0).setCellValue("{{?charts}}");
+			chart.getCTChart().getPlotArea().getBarChartArray(0).getBarDir().setVal(barDir);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			doc.write(out);
+			return out.toByteArray();
+		}
+	}
+
+	private static JSONObject model(int items) {
+		JSONArray charts = new JSONArray();
+		for (int i = 0; i < items; i++) {
+			charts.add(new ChartDataGenerator(2, 3, 0, i).rows());
+		}
+		JSONObject model = new JSONObject();
+		model.put("charts", charts);
+		return model;
+	}
+
+	private static void assertBarDirs(byte[] bytes, STBarDir.Enum barDir, int charts) throws Exception {
+		try (XWPFDocument doc = new XWPFDocument(new ByteArrayInputStream(bytes))) {
+			assertEquals(charts, doc.getCharts().size());
+			for (XWPFChart chart : doc.getCharts()) {
+				assertEquals(chart.getPackagePart().getPartName().getName(), barDir,
+						chart.getCTChart().getPlotArea().getBarChartArray(0).getBarDir().getVal());
+			}
+		}
+	}
+
+}
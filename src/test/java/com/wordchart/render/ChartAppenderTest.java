@@ -0,0 +1,263 @@
+package com.wordchart.render;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.openxml4j.opc.TargetMode;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.wp.usermodel.HeaderFooterType;
+import org.apache.poi.xwpf.usermodel.XWPFChart;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFHeader;
+import org.apache.poi.xwpf.usermodel.XWPFRelation;
+import org.junit.Before;
+import org.junit.Test;
+import org.openxmlformats.schemas.drawingml.x2006.chart.CTBarSer;
+import org.openxmlformats.schemas.drawingml.x2006.chart.CTNumData;
+import org.openxmlformats.schemas.drawingml.x2006.chart.CTStrData;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.deepoove.poi.resolver.TemplateResolver;
+
+public class ChartAppenderTest {
+
+	private byte[] templateBytes;
+
+	private String tagName;
+
+	@Before
+	public void setUp() throws Exception {
+		templateBytes = ChartTemplates.readTemplate(null);
+		tagName = ChartTemplates.chartTagNames(templateBytes).get(0);
+	}
+
+	@Test
+	public void appendWithoutWindow() throws Exception {
+		try (XWPFDocument doc = render(5)) {
+			XWPFChart chart = doc.getCharts().get(0);
+			new ChartAppender(chart).append(rows(6, 2), 0);
+
+			assertPoints(chart, "$A$2:$A$8", 1, 7);
+			assertSheet(chart, 1, 7);
+		}
+	}
+
+	@Test
+	public void rollingWindowDropsOldestRows() throws Exception {
+		try (XWPFDocument doc = render(5)) {
+			XWPFChart chart = doc.getCharts().get(0);
+			new ChartAppender(chart).append(rows(6, 2), 5);
+
+			assertPoints(chart, "$A$4:$A$8", 3, 7);
+			assertSheet(chart, 3, 7);
+			assertNull(chart.getWorkbook().getSheetAt(0).getRow(1));
+			assertNull(chart.getWorkbook().getSheetAt(0).getRow(2));
+		}
+	}
+
+	@Test
+	public void batchLargerThanWindowKeepsLastRows() throws Exception {
+		try (XWPFDocument doc = render(5)) {
+			XWPFChart chart = doc.getCharts().get(0);
+			new ChartAppender(chart).append(rows(6, 10), 3);
+
+			assertPoints(chart, "$A$7:$A$9", 13, 15);
+			assertSheet(chart, 13, 15);
+			assertEquals(4, chart.getWorkbook().getSheetAt(0).getPhysicalNumberOfRows());
+		}
+	}
+
+	@Test
+	public void repeatedAppendsKeepWindow() throws Exception {
+		try (XWPFDocument doc = render(3)) {
+			XWPFChart chart = doc.getCharts().get(0);
+			ChartAppender appender = new ChartAppender(chart);
+			for (int i = 0; i < 4; i++) {
+				appender.append(rows(4 + i * 2, 2), 4);
+			}
+
+			assertPoints(chart, "$A$9:$A$12", 8, 11);
+			assertSheet(chart, 8, 11);
+		}
+	}
+
+	@Test
+	public void appendToRenderedDocument() throws Exception {
+		String partName = ChartTemplates.chartPartNames(templateBytes).get(tagName);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (XWPFDocument doc = render(5)) {
+			doc.write(out);
+		}
+		ByteArrayOutputStream appended = new ByteArrayOutputStream();
+		ChartAppender.append(new ByteArrayInputStream(out.toByteArray()), appended,
+				Collections.singletonMap(partName, rows(6, 1)), 5);
+
+		try (XWPFDocument doc = new XWPFDocument(new ByteArrayInputStream(appended.toByteArray()))) {
+			XWPFChart chart = null;
+			for (XWPFChart candidate : doc.getCharts()) {
+				if (candidate.getPackagePart().getPartName().getName().equals(partName)) {
+					chart = candidate;
+				}
+			}
+			assertPoints(chart, "$A$3:$A$7", 2, 6);
+			assertSheet(chart, 2, 6);
+		}
+	}
+
+	@Test
+	public void appendToCacheWithOmittedPoints() throws Exception {
+		try (XWPFDocument doc = render(5)) {
+			XWPFChart chart = doc.getCharts().get(0);
+			// 模拟EXCEL另存后省略空值点:第3行(idx 2)没有数值点
+			for (CTBarSer ser : chart.getCTChart().getPlotArea().getBarChartArray(0).getSerList()) {
+				ser.getVal().getNumRef().getNumCache().removePt(2);
+			}
+			new ChartAppender(chart).append(rows(6, 2), 0);
+
+			assertNumIdx(chart, 7, 0, 1, 3, 4, 5, 6);
+		}
+	}
+
+	@Test
+	public void rollingWindowKeepsOmittedPoints() throws Exception {
+		try (XWPFDocument doc = render(5)) {
+			XWPFChart chart = doc.getCharts().get(0);
+			for (CTBarSer ser : chart.getCTChart().getPlotArea().getBarChartArray(0).getSerList()) {
+				ser.getVal().getNumRef().getNumCache().removePt(2);
+			}
+			new ChartAppender(chart).append(rows(6, 2), 5);
+
+			// 丢弃idx 0、1,原idx 2仍为空值点
+			assertNumIdx(chart, 5, 1, 2, 3, 4);
+			CTNumData numData = chart.getCTChart().getPlotArea().getBarChartArray(0).getSerArray(0).getVal()
+					.getNumRef().getNumCache();
+			assertEquals("4", numData.getPtArray(0).getV());
+			assertEquals("7", numData.getPtArray(3).getV());
+			assertEquals(5, chart.getCTChart().getPlotArea().getBarChartArray(0).getSerArray(0).getCat().getStrRef()
+					.getStrCache().getPtCount().getVal());
+		}
+	}
+
+	@Test
+	public void appendToHeaderChart() throws Exception {
+		String partName = ChartTemplates.chartPartNames(templateBytes).get(tagName);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (XWPFDocument doc = render(5)) {
+			// 把图表关系从正文移到页眉
+			XWPFChart chart = doc.getCharts().get(0);
+			XWPFHeader header = doc.createHeader(HeaderFooterType.DEFAULT);
+			header.getPackagePart().addRelationship(chart.getPackagePart().getPartName(), TargetMode.INTERNAL,
+					XWPFRelation.CHART.getRelation());
+			doc.getPackagePart().removeRelationship(doc.getRelationId(chart));
+			doc.write(out);
+		}
+		ByteArrayOutputStream appended = new ByteArrayOutputStream();
+		ChartAppender.append(new ByteArrayInputStream(out.toByteArray()), appended,
+				Collections.singletonMap(partName, rows(6, 1)), 5);
+
+		try (XWPFDocument doc = new XWPFDocument(new ByteArrayInputStream(appended.toByteArray()))) {
+			assertTrue(doc.getCharts().isEmpty());
+			List<XWPFChart> charts = TemplateResolver.headerFooterCharts(doc);
+			assertEquals(1, charts.size());
+			assertPoints(charts.get(0), "$A$3:$A$7", 2, 6);
+			assertSheet(charts.get(0), 2, 6);
+		}
+	}
+
+	private XWPFDocument render(int points) throws Exception {
+		JSONArray rows = new JSONArray();
+		JSONArray header = new JSONArray();
+		header.add("");
+		header.add("系列1");
+		header.add("系列2");
+		rows.add(header);
+		rows.addAll(rows(1, points));
+		JSONObject model = new JSONObject();
+		model.put(tagName, rows);
+		byte[] bytes = DocumentRenderer.xwpf(templateBytes, ChartTemplates.chartConfigure(templateBytes))
+				.render(model);
+		return new XWPFDocument(new ByteArrayInputStream(bytes));
+	}
+
+	/**
+	 * 第n行为["类别n", n, n * 10]
+	 */
+	private static JSONArray rows(int from, int size) {
+		JSONArray rows = new JSONArray();
+		for (int n = from; n < from + size; n++) {
+			JSONArray cols = new JSONArray();
+			cols.add("类别" + n);
+			cols.add(String.valueOf(n));
+			cols.add(String.valueOf(n * 10));
+			rows.add(cols);
+		}
+		return rows;
+	}
+
+	/**
+	 * 每个系列的点缓存依次为first~last行,idx从0开始
+	 */
+	private static void assertPoints(XWPFChart chart, String categoryRange, int first, int last) {
+		List<CTBarSer> sers = chart.getCTChart().getPlotArea().getBarChartArray(0).getSerList();
+		assertEquals(2, sers.size());
+		for (int serIndex = 0; serIndex < sers.size(); serIndex++) {
+			CTBarSer ser = sers.get(serIndex);
+			assertTrue(ser.getCat().getStrRef().getF(), ser.getCat().getStrRef().getF().endsWith("!" + categoryRange));
+			CTStrData strData = ser.getCat().getStrRef().getStrCache();
+			CTNumData numData = ser.getVal().getNumRef().getNumCache();
+			int count = last - first + 1;
+			assertEquals(count, strData.getPtCount().getVal());
+			assertEquals(count, numData.getPtCount().getVal());
+			assertEquals(count, strData.sizeOfPtArray());
+			assertEquals(count, numData.sizeOfPtArray());
+			for (int i = 0; i < count; i++) {
+				int n = first + i;
+				assertEquals(i, strData.getPtArray(i).getIdx());
+				assertEquals("类别" + n, strData.getPtArray(i).getV());
+				assertEquals(i, numData.getPtArray(i).getIdx());
+				assertEquals(String.valueOf(serIndex == 0 ? n : n * 10), numData.getPtArray(i).getV());
+			}
+		}
+	}
+
+	/**
+	 * 每个系列的数值点缓存的ptCount与各点idx
+	 */
+	private static void assertNumIdx(XWPFChart chart, int ptCount, int... idxs) {
+		for (CTBarSer ser : chart.getCTChart().getPlotArea().getBarChartArray(0).getSerList()) {
+			CTNumData numData = ser.getVal().getNumRef().getNumCache();
+			assertEquals(ptCount, numData.getPtCount().getVal());
+			assertEquals(idxs.length, numData.sizeOfPtArray());
+			for (int i = 0; i < idxs.length; i++) {
+				assertEquals(idxs[i], numData.getPtArray(i).getIdx());
+			}
+		}
+	}
+
+	/**
+	 * sheet中紧接在系列区域首行之后依次为first~last行
+	 */
+	private static void assertSheet(XWPFChart chart, int first, int last) throws Exception {
+		Sheet sheet = chart.getWorkbook().getSheetAt(0);
+		String formula = chart.getCTChart().getPlotArea().getBarChartArray(0).getSerArray(0).getCat().getStrRef()
+				.getF();
+		int firstRow = new CellReference(formula.substring(formula.lastIndexOf('!') + 1).split(":")[0]).getRow();
+		for (int n = first; n <= last; n++) {
+			Row row = sheet.getRow(firstRow + n - first);
+			assertEquals("类别" + n, row.getCell(0).getStringCellValue());
+			assertEquals(n, row.getCell(1).getNumericCellValue(), 0);
+			assertEquals(n * 10, row.getCell(2).getNumericCellValue(), 0);
+		}
+		assertEquals("系列1", sheet.getRow(0).getCell(1).getStringCellValue());
+	}
+
+}